@@ -0,0 +1,51 @@
+package bench;
+
+import model.Board;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/** Measures Board moves and the chess notation conversions used on every UI and network message. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+    private static final String[] SQUARES = {"a1", "e4", "h8", "d5", "g2", "b7", "c3", "f6"};
+
+    private Board board;
+    private int index;
+
+    @Setup
+    public void setup() {
+        board = Positions.toBoard(Positions.MIDDLEGAME[2]);
+    }
+
+    // Moves the f3 knight out and back so the board ends each invocation unchanged.
+    @Benchmark
+    public void movePiece() {
+        board.movePiece("f3", "g5");
+        board.movePiece("g5", "f3");
+    }
+
+    @Benchmark
+    public Object getPieceByNotation() {
+        index = (index + 1) & 7;
+        return board.getPiece(SQUARES[index]);
+    }
+
+    @Benchmark
+    public String toChessNotation() {
+        index = (index + 1) & 63;
+        return Board.toChessNotation(index >>> 3, index & 7);
+    }
+
+    @Benchmark
+    public void fromChessNotation(Blackhole blackhole) {
+        index = (index + 1) & 7;
+        blackhole.consume(Board.fromChessNotation(SQUARES[index]));
+    }
+}
@@ -0,0 +1,89 @@
+package bench;
+
+import metrics.LatencyRecorder;
+import server.Envelope;
+import server.SocketBroker;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures what a broker hop between two nodes costs on loopback: the round trip of one envelope at a time, which is
+ * two hops, then the rate of a burst of move relays and how many envelopes each batched write carried:
+ *     java -cp benchmarks/target/benchmarks.jar bench.BrokerRelay --round-trips=20000 --burst=200000 --port=7801
+ */
+public class BrokerRelay {
+    private static final int WARMUP_ROUND_TRIPS = 2000;
+    private static final String MOVE = "MOVE e2 e4 CLOCK 600000 600000";
+
+    // Runs the benchmark: [--round-trips=N] [--burst=N] [--port=N, which uses N and N+1].
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int roundTrips = 20_000;
+        int burst = 200_000;
+        int port = 7801;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--round-trips=")) roundTrips = Integer.parseInt(value);
+            else if (arg.startsWith("--burst=")) burst = Integer.parseInt(value);
+            else if (arg.startsWith("--port=")) port = Integer.parseInt(value);
+            else throw new IllegalArgumentException("Unknown argument: " + arg);
+        }
+
+        Map<Integer, InetSocketAddress> addresses = Map.of(1, new InetSocketAddress("127.0.0.1", port),
+                2, new InetSocketAddress("127.0.0.1", port + 1));
+        SocketBroker home = new SocketBroker(1, addresses);
+        SocketBroker remote = new SocketBroker(2, addresses);
+
+        // The remote node echoes inputs back as deliveries, as a room would relay a move; bursts are only counted.
+        AtomicInteger burstReceived = new AtomicInteger();
+        CountDownLatch burstDone = new CountDownLatch(1);
+        int burstSize = burst;
+        remote.start(envelope -> {
+            if (envelope.kind() == Envelope.INPUT) {
+                remote.send(1, new Envelope(Envelope.DELIVER, 2, envelope.room(), envelope.player(), envelope.text()));
+            } else if (burstReceived.incrementAndGet() == burstSize) {
+                burstDone.countDown();
+            }
+        });
+        BlockingQueue<Envelope> replies = new LinkedBlockingQueue<>();
+        home.start(replies::add);
+
+        roundTrips(home, replies, WARMUP_ROUND_TRIPS);
+        LatencyRecorder roundTrip = roundTrips(home, replies, roundTrips);
+        System.out.println("Round trip over two hops: " + roundTrip.summary());
+
+        long batchesBefore = home.batchCount();
+        long start = System.nanoTime();
+        for (int i = 0; i < burst; i++) {
+            while (!home.send(2, new Envelope(Envelope.DELIVER, 1, i, "USER1", MOVE))) Thread.onSpinWait();
+        }
+        if (!burstDone.await(60, TimeUnit.SECONDS)) System.out.println("Burst incomplete: " + burstReceived.get());
+        long elapsed = System.nanoTime() - start;
+        long batches = home.batchCount() - batchesBefore;
+        System.out.printf("Burst of %d relays: %.0f envelopes/s, %d batched writes, %.1f envelopes per write%n",
+                burst, burst * 1e9 / elapsed, batches, (double) burst / Math.max(1, batches));
+
+        home.close();
+        remote.close();
+        System.exit(0);
+    }
+
+    // Sends inputs one at a time, waiting for each echo, and returns the round-trip histogram.
+    private static LatencyRecorder roundTrips(SocketBroker home, BlockingQueue<Envelope> replies, int count)
+            throws InterruptedException {
+        LatencyRecorder latency = new LatencyRecorder();
+        for (int i = 0; i < count; i++) {
+            long sent = System.nanoTime();
+            home.send(2, new Envelope(Envelope.INPUT, 1, i, "USER1", MOVE));
+            if (replies.poll(5, TimeUnit.SECONDS) == null) throw new IllegalStateException("No echo for input " + i);
+            latency.record(System.nanoTime() - sent);
+        }
+        return latency;
+    }
+}
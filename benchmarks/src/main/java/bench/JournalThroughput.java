@@ -0,0 +1,100 @@
+package bench;
+
+import server.GameJournal;
+import server.RecoveredGame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import protocol.BinaryProtocol;
+
+/**
+ * Plays synthetic games into the journal from several threads, reporting append and durable throughput,
+ * then reopens the journal and checks that exactly the unfinished games come back with all their moves. Producers
+ * outrunning the disk by a whole ring lose records, which the summary counts as dropped:
+ *     java -cp benchmarks/target/benchmarks.jar bench.JournalThroughput --games=20000 --plies=60 --dir=/tmp/journal
+ */
+public class JournalThroughput {
+    // Runs the benchmark: [--games=N] [--plies=N] [--threads=N] [--segment-mb=N] [--dir=PATH].
+    public static void main(String[] args) throws Exception {
+        int games = 20_000;
+        int plies = 60;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int segmentMb = 64;
+        Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "chess-journal-bench");
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--games=")) games = Integer.parseInt(value);
+            else if (arg.startsWith("--plies=")) plies = Integer.parseInt(value);
+            else if (arg.startsWith("--threads=")) threads = Integer.parseInt(value);
+            else if (arg.startsWith("--segment-mb=")) segmentMb = Integer.parseInt(value);
+            else if (arg.startsWith("--dir=")) directory = Paths.get(value);
+            else throw new IllegalArgumentException("Unknown argument: " + arg);
+        }
+        deleteSegments(directory);
+        System.out.println("Games: " + games + ", plies: " + plies + ", threads: " + threads + ", segments: "
+                + segmentMb + " MB in " + directory);
+
+        GameJournal journal = GameJournal.open(directory, segmentMb * 1024 * 1024);
+        long records = (long) games * (plies + 3) + games / 2;
+        long start = System.nanoTime();
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int first = t * games / threads;
+            int last = (t + 1) * games / threads;
+            int gamePlies = plies;
+            producers[t] = new Thread(() -> {
+                for (int game = first; game < last; game++) {
+                    long roomId = game + 1;
+                    journal.roomStarted(roomId, roomId, ~roomId);
+                    for (int ply = 1; ply <= gamePlies; ply++) journal.moveAccepted(roomId, ply, syntheticMove(ply));
+                    // Every other game finishes; the rest must come back on recovery.
+                    if (game % 2 == 0) journal.roomEnded(roomId);
+                }
+            }, "producer-" + t);
+            producers[t].start();
+        }
+        for (Thread producer : producers) producer.join();
+        long appendNanos = System.nanoTime() - start;
+        journal.close();
+        long durableNanos = System.nanoTime() - start;
+
+        System.out.println("Appended " + records + " records in " + appendNanos / 1_000_000 + " ms ("
+                + perSecond(records, appendNanos) + " records/s)");
+        System.out.println("Durable after " + durableNanos / 1_000_000 + " ms (" + perSecond(records, durableNanos)
+                + " records/s): " + journal.summary());
+
+        long recoverStart = System.nanoTime();
+        GameJournal reopened = GameJournal.open(directory, segmentMb * 1024 * 1024);
+        long recoverNanos = System.nanoTime() - recoverStart;
+        int complete = 0;
+        for (RecoveredGame game : reopened.recoveredGames()) {
+            if (game.moves().length == plies && game.moves()[plies - 1] == syntheticMove(plies)) complete++;
+        }
+        reopened.close();
+        System.out.println("Recovered " + reopened.recoveredGames().size() + " unfinished games (" + complete
+                + " with every move, expected " + games / 2 + " when none were dropped) in " + recoverNanos / 1_000_000 + " ms");
+    }
+
+    // Returns a legal-looking packed move that varies with the ply.
+    private static int syntheticMove(int ply) {
+        return BinaryProtocol.encodeMove(ply % 64, (ply * 7) % 64, BinaryProtocol.NO_PROMOTION);
+    }
+
+    // Removes segment files left by an earlier run.
+    private static void deleteSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) return;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(file);
+        }
+    }
+
+    // Returns events per second.
+    private static long perSecond(long events, long nanos) {
+        return nanos == 0 ? 0 : events * 1_000_000_000L / nanos;
+    }
+}
@@ -0,0 +1,132 @@
+package bench;
+
+import protocol.BinaryProtocol;
+import server.ServerMain;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks that a client sending broken binary frames only hurts itself: with every connection on one event loop, a
+ * seated player sends a truncated MOVE frame, a move with no promotion piece in its promotion field and an unknown
+ * opcode, and the check then expects the opponent and two newcomers still to be served. Exits with status 1 on failure:
+ *     java -cp benchmarks/target/benchmarks.jar bench.MalformedFrames --port=7901
+ */
+public class MalformedFrames {
+    private static final int SOCKET_TIMEOUT_MILLIS = 5_000;
+
+    // Runs the check: [--port=N].
+    public static void main(String[] args) throws Exception {
+        int port = 7901;
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) port = Integer.parseInt(arg.substring("--port=".length()));
+            else throw new IllegalArgumentException("Unknown argument: " + arg);
+        }
+        startServer(port);
+        try {
+            check(port);
+        } catch (IOException e) {
+            fail(e.toString());
+        }
+        System.exit(0);
+    }
+
+    // Breaks the frames of one seated player, then checks that its opponent and two newcomers get replies.
+    private static void check(int port) throws IOException {
+        try (Socket first = connect(port); Socket second = connect(port)) {
+            DataInputStream firstIn = new DataInputStream(first.getInputStream());
+            DataInputStream secondIn = new DataInputStream(second.getInputStream());
+            expect(firstIn, "START ");
+            expect(secondIn, "START ");
+
+            OutputStream out = first.getOutputStream();
+            out.write((BinaryProtocol.HELLO + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(new byte[]{0, 1, BinaryProtocol.MOVE});
+            out.write(ByteBuffer.allocate(5).putShort((short) 3).put((byte) BinaryProtocol.MOVE)
+                    .putShort((short) (7 << 12 | 52 << 6 | 48)).array());
+            out.write(new byte[]{0, 1, 99});
+            out.flush();
+            expect(firstIn, BinaryProtocol.ACCEPTED);
+            expectFrame(firstIn, "ERROR malformed move");
+            expectFrame(firstIn, "ERROR malformed move");
+
+            second.getOutputStream().write("MOVE e9 e4\n".getBytes(StandardCharsets.US_ASCII));
+            expect(secondIn, "ERROR ");
+            System.out.println("Opponent still served after malformed frames");
+        }
+
+        try (Socket third = connect(port); Socket fourth = connect(port)) {
+            expect(new DataInputStream(third.getInputStream()), "START ");
+            expect(new DataInputStream(fourth.getInputStream()), "START ");
+            System.out.println("Newcomers still matched after malformed frames");
+        }
+    }
+
+    // Starts a server with a single event loop on a daemon thread and waits until it accepts connections.
+    private static void startServer(int port) throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            try {
+                ServerMain.main(new String[]{"--mode=nio", "--event-loops=1", "--port=" + port, "--journal=none",
+                        "--log-level=warn", "--metrics-port=0"});
+            } catch (IOException e) {
+                throw new IllegalStateException("Server failed", e);
+            }
+        }, "server-main");
+        thread.setDaemon(true);
+        thread.start();
+        for (int attempt = 0; attempt < 100; attempt++) {
+            try (Socket probe = new Socket("localhost", port)) {
+                probe.getOutputStream().write("EXIT\n".getBytes());
+                return;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+        throw new IllegalStateException("Server did not start on port " + port);
+    }
+
+    // Opens a connection that gives up on a silent server.
+    private static Socket connect(int port) throws IOException {
+        Socket socket = new Socket("localhost", port);
+        socket.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+        return socket;
+    }
+
+    // Reads lines until one starts with the prefix, failing the check if the server hangs up first.
+    private static void expect(DataInputStream in, String prefix) throws IOException {
+        for (String line; (line = readLine(in)) != null; ) {
+            if (line.startsWith(prefix)) return;
+        }
+        fail("connection closed while waiting for " + prefix);
+    }
+
+    // Reads one line a byte at a time, so that binary frames after it stay unread, or returns null at end of stream.
+    private static String readLine(DataInputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int next; (next = in.read()) != '\n'; ) {
+            if (next < 0) return null;
+            line.append((char) next);
+        }
+        return line.toString();
+    }
+
+    // Reads frames until one decodes to a line starting with the prefix.
+    private static void expectFrame(DataInputStream in, String prefix) throws IOException {
+        while (true) {
+            byte[] frame = new byte[in.readUnsignedShort()];
+            in.readFully(frame);
+            String line = BinaryProtocol.decode(frame[0] & 0xFF, ByteBuffer.wrap(frame, 1, frame.length - 1));
+            if (line.startsWith(prefix)) return;
+        }
+    }
+
+    // Reports a failed check and exits.
+    private static void fail(String reason) {
+        System.out.println("FAILED: " + reason);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,135 @@
+package bench;
+
+import metrics.LatencyRecorder;
+import server.ChessRoom;
+import server.Matchmaker;
+import server.Player;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queues a crowd of rated players into the matchmaker and reports enqueue throughput, tick cost and time to match.
+ * The burst phase queues everyone at once from several threads; the steady phase feeds arrivals at a fixed rate
+ * on a simulated clock, so the widening rating windows play out without waiting in real time:
+ *     java -cp benchmarks/target/benchmarks.jar bench.MatchmakingLoad --players=100000 --rate=2000
+ */
+public class MatchmakingLoad {
+    private static final int MEAN_RATING = 1500;
+    private static final int RATING_SPREAD = 350;
+    private static final int DRAIN_TICKS = 1_000;
+
+    // Runs the benchmark: [--players=N] [--producers=N] [--rate=arrivals per second] [--tick-ms=N].
+    public static void main(String[] args) throws InterruptedException {
+        int players = 100_000;
+        int producers = Runtime.getRuntime().availableProcessors();
+        int rate = 2_000;
+        int tickMillis = 100;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--players=")) players = Integer.parseInt(value);
+            else if (arg.startsWith("--producers=")) producers = Integer.parseInt(value);
+            else if (arg.startsWith("--rate=")) rate = Integer.parseInt(value);
+            else if (arg.startsWith("--tick-ms=")) tickMillis = Integer.parseInt(value);
+            else throw new IllegalArgumentException("Unknown argument: " + arg);
+        }
+
+        System.out.println("Players: " + players + ", producers: " + producers + ", tick: " + tickMillis + " ms");
+        burst(players, producers);
+        steady(players, rate, tickMillis);
+    }
+
+    // Queues every player at once from the producer threads, then pairs them in a single tick.
+    private static void burst(int players, int producers) throws InterruptedException {
+        AtomicLong seated = new AtomicLong();
+        Matchmaker matchmaker = newMatchmaker(seated);
+
+        long start = System.nanoTime();
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int first = p * players / producers;
+            int last = (p + 1) * players / producers;
+            Random random = new Random(p);
+            threads[p] = new Thread(() -> {
+                for (int i = first; i < last; i++) matchmaker.enqueue(new QueuedPlayer("P" + i), nextRating(random));
+            }, "producer-" + p);
+            threads[p].start();
+        }
+        for (Thread thread : threads) thread.join();
+        long enqueueNanos = System.nanoTime() - start;
+
+        long before = System.nanoTime();
+        matchmaker.tick();
+        long tickNanos = System.nanoTime() - before;
+
+        System.out.println("[burst] Enqueued " + players + " players in " + enqueueNanos / 1_000_000 + " ms ("
+                + perSecond(players, enqueueNanos) + " enqueues/s)");
+        System.out.println("[burst] One tick seated " + seated.get() + " players in " + tickNanos / 1_000_000
+                + " ms (" + perSecond(seated.get(), tickNanos) + " players/s), still waiting "
+                + matchmaker.waitingCount());
+    }
+
+    // Feeds arrivals at the given rate on a simulated clock and ticks until the queue drains.
+    private static void steady(int players, int rate, int tickMillis) {
+        AtomicLong seated = new AtomicLong();
+        Matchmaker matchmaker = newMatchmaker(seated);
+        LatencyRecorder tickCost = new LatencyRecorder();
+        Random random = new Random(42);
+
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        long now = System.nanoTime();
+        int queued = 0;
+        int ticks = 0;
+        int drainTicks = 0;
+        double owed = 0;
+        while (queued < players || (matchmaker.waitingCount() > 1 && drainTicks++ < DRAIN_TICKS)) {
+            owed += (double) rate * tickMillis / 1000;
+            for (; owed >= 1 && queued < players; owed--, queued++) {
+                long arrival = now + (long) (random.nextDouble() * tickNanos);
+                matchmaker.enqueue(new QueuedPlayer("S" + queued), nextRating(random), arrival);
+            }
+            now += tickNanos;
+            long before = System.nanoTime();
+            matchmaker.tick(now);
+            tickCost.record(System.nanoTime() - before);
+            ticks++;
+        }
+
+        System.out.println("[steady] " + rate + " arrivals/s: seated " + seated.get() + " players over " + ticks
+                + " ticks (" + ticks * tickMillis / 1000 + " s simulated), still waiting " + matchmaker.waitingCount());
+        System.out.println("[steady] Tick cost: " + tickCost.summary());
+        System.out.println("[steady] Time to match: " + matchmaker.timeToMatch().summary());
+    }
+
+    // Creates a matchmaker that counts seated players and never gives up on anyone within the run.
+    private static Matchmaker newMatchmaker(AtomicLong seated) {
+        return new Matchmaker((white, black) -> seated.addAndGet(2), player -> { }, 1, TimeUnit.HOURS);
+    }
+
+    // Draws a rating from a bell curve around the mean.
+    private static int nextRating(Random random) {
+        return (int) Math.round(MEAN_RATING + random.nextGaussian() * RATING_SPREAD);
+    }
+
+    // Returns events per second.
+    private static long perSecond(long events, long nanos) {
+        return nanos == 0 ? 0 : events * 1_000_000_000L / nanos;
+    }
+
+    /** A queued player that never connects anywhere; only its identity matters to the matchmaker. */
+    private record QueuedPlayer(String name) implements Player {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void sendMessage(String msg) {
+        }
+
+        @Override
+        public void setRoom(ChessRoom room) {
+        }
+    }
+}
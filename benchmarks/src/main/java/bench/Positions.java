@@ -0,0 +1,41 @@
+package bench;
+
+import model.Board;
+
+/** Corpus of realistic middlegame and endgame positions shared by the benchmarks. */
+public final class Positions {
+    public static final String[] MIDDLEGAME = {
+            "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+            "r1bq1rk1/ppp2ppp/2np1n2/2b1p3/2B1P3/2NP1N2/PPP2PPP/R1BQ1RK1 w - - 0 7",
+            "r2q1rk1/pp2bppp/2n1bn2/2pp4/3P4/2P1PN2/PP1NBPPP/R1BQ1RK1 w - - 0 9",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "2rq1rk1/pb1nbppp/1p2pn2/2pp4/2PP4/1PN1PN2/PB2BPPP/2RQ1RK1 b - - 3 11",
+            "r1b2rk1/2q1bppp/p2p1n2/np2p3/3PP3/5N1P/PPB2PP1/RNBQR1K1 w - - 1 13",
+            "r2qr1k1/1b1nbppp/p2p1n2/1p2p3/3PP3/P1N1BN1P/1PB2PP1/R2QR1K1 b - - 6 15",
+    };
+
+    public static final String[] ENDGAME = {
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "8/8/4k3/8/2P5/4K3/8/8 w - - 0 1",
+            "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1",
+            "8/5k2/8/3Q4/8/8/6K1/8 w - - 0 1",
+            "4k3/8/8/8/8/8/8/4K2R w K - 0 1",
+            "8/8/1p3k2/p1p2p2/P1P2P2/1P3K2/8/8 b - - 0 40",
+            "7k/5Q2/6K1/8/8/8/8/8 b - - 0 1",
+            "3R2k1/5ppp/8/8/8/8/8/6K1 b - - 0 1",
+    };
+
+    private Positions() {
+    }
+
+    // Returns the FEN corpus for a game phase name ("middlegame" or "endgame").
+    public static String[] forPhase(String phase) {
+        return phase.equals("endgame") ? ENDGAME : MIDDLEGAME;
+    }
+
+    // Builds a board holding the position described by the FEN.
+    public static Board toBoard(String fen) {
+        return Board.fromFen(fen);
+    }
+}
@@ -0,0 +1,96 @@
+package bench;
+
+import server.ChessRoom;
+import server.Player;
+import server.RoomRegistry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Creates and closes rooms through the registry while keeping a fixed number alive, then closes the rest and samples
+ * the heap after a full GC at each checkpoint; a flat heap line and zero live rooms show that closed rooms are released:
+ *     java -cp benchmarks/target/benchmarks.jar bench.RoomChurn --cycles=1000000 --live=10000
+ */
+public class RoomChurn {
+    private static final int CHECKPOINTS = 10;
+
+    // Runs the churn: [--cycles=N] [--live=N] [--threads=N].
+    public static void main(String[] args) throws InterruptedException {
+        int cycles = 1_000_000;
+        int live = 10_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--cycles=")) cycles = Integer.parseInt(value);
+            else if (arg.startsWith("--live=")) live = Integer.parseInt(value);
+            else if (arg.startsWith("--threads=")) threads = Integer.parseInt(value);
+            else throw new IllegalArgumentException("Unknown argument: " + arg);
+        }
+
+        RoomRegistry registry = new RoomRegistry();
+        Player white = new IdlePlayer("white");
+        Player black = new IdlePlayer("black");
+        System.out.println("Cycles: " + cycles + ", live rooms: " + live + ", threads: " + threads);
+        System.out.println("Heap before: " + usedHeapMb() + " MB");
+
+        long start = System.nanoTime();
+        int perCheckpoint = cycles / CHECKPOINTS;
+        for (int checkpoint = 1; checkpoint <= CHECKPOINTS; checkpoint++) {
+            churn(registry, white, black, perCheckpoint, live, threads);
+            System.out.println("After " + checkpoint * perCheckpoint + " cycles: heap " + usedHeapMb() + " MB, rooms "
+                    + registry.summary());
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println(cycles + " cycles in " + elapsed / 1_000_000 + " ms ("
+                + (long) cycles * 1_000_000_000L / Math.max(1, elapsed) + " rooms/s)");
+    }
+
+    // Runs the cycles across the threads; each thread keeps its share of live rooms in a ring and closes the oldest.
+    private static void churn(RoomRegistry registry, Player white, Player black, int cycles, int live, int threads)
+            throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int share = cycles / threads + (t < cycles % threads ? 1 : 0);
+            int ringSize = Math.max(1, live / threads);
+            workers[t] = new Thread(() -> {
+                ChessRoom[] ring = new ChessRoom[ringSize];
+                for (int i = 0; i < share; i++) {
+                    int slot = i % ringSize;
+                    if (ring[slot] != null) ring[slot].close();
+                    ring[slot] = registry.create(white, black);
+                    if (registry.get(ring[slot].getId()) != ring[slot]) throw new IllegalStateException("lost room");
+                }
+                for (ChessRoom room : ring) {
+                    if (room != null) room.close();
+                }
+            }, "churn-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) worker.join();
+    }
+
+    // Returns the heap in use after a full collection, in megabytes.
+    private static long usedHeapMb() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        return memory.getHeapMemoryUsage().getUsed() / (1024 * 1024);
+    }
+
+    /** A seat holder that ignores every message, so the churn measures only the rooms and the registry. */
+    private record IdlePlayer(String name) implements Player {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void sendMessage(String msg) {
+        }
+
+        @Override
+        public void setRoom(ChessRoom room) {
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package bench;
+
+import model.Board;
+import model.Fen;
+import model.Move;
+import model.MoveGenerator;
+import model.Position;
+import model.RuleEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Measures the rule queries the UI and server ask after every move, over a corpus of positions. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RuleEngineBenchmark {
+    @Param({"middlegame", "endgame"})
+    public String phase;
+
+    // When true the board is touched before every query, forcing the engine to resync as it would after a move.
+    @Param({"false", "true"})
+    public boolean freshBoard;
+
+    private Board[] boards;
+    private RuleEngine[] engines;
+    private String[] colors;
+    private String[] legalFrom;
+    private String[] legalTo;
+    private int index;
+
+    // Loads the corpus and picks one legal move per position as the isMoveValid probe.
+    @Setup
+    public void setup() {
+        String[] fens = Positions.forPhase(phase);
+        boards = new Board[fens.length];
+        engines = new RuleEngine[fens.length];
+        colors = new String[fens.length];
+        legalFrom = new String[fens.length];
+        legalTo = new String[fens.length];
+
+        Position position = new Position();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int i = 0; i < fens.length; i++) {
+            Fen.load(fens[i], position);
+            boards[i] = position.toBoard();
+            engines[i] = new RuleEngine(boards[i]);
+            colors[i] = Position.colorName(position.getSideToMove());
+
+            int count = MoveGenerator.generateLegal(position, moves);
+            int move = count > 0 ? moves[count / 2] : Move.encode(0, 63, Move.QUIET);
+            legalFrom[i] = Position.squareName(Move.from(move));
+            legalTo[i] = Position.squareName(Move.to(move));
+        }
+    }
+
+    // Advances to the next corpus position, touching its board when fresh boards are requested.
+    private int next() {
+        int i = index;
+        index = (i + 1) % boards.length;
+        if (freshBoard) {
+            Board board = boards[i];
+            board.setPiece(0, 0, board.getPiece(0, 0));
+        }
+        return i;
+    }
+
+    @Benchmark
+    public boolean isMoveValid() {
+        int i = next();
+        return engines[i].isMoveValid(legalFrom[i], legalTo[i], colors[i]);
+    }
+
+    @Benchmark
+    public boolean isCheck() {
+        int i = next();
+        return engines[i].isCheck(colors[i]);
+    }
+
+    @Benchmark
+    public boolean isCheckmate() {
+        int i = next();
+        return engines[i].isCheckmate(colors[i]);
+    }
+
+    @Benchmark
+    public boolean isStalemate() {
+        int i = next();
+        return engines[i].isStalemate(colors[i]);
+    }
+}
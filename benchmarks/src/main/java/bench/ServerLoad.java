@@ -0,0 +1,215 @@
+package bench;
+
+import server.ChessRoom;
+import server.ServerMain;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simulates many concurrent players against the server and reports connect rate, footprint and move round trips.
+ * Compare server modes by running it once per mode with the server hosted in-process, for example:
+ *     java -cp benchmarks/target/benchmarks.jar bench.ServerLoad --server=threads --clients=10000
+ *     java -cp benchmarks/target/benchmarks.jar bench.ServerLoad --server=virtual --clients=10000
+ * Raise the open-file limit (ulimit -n) above twice the client count first.
+ */
+public class ServerLoad {
+    // A knight shuffle that stays legal forever, so the load also passes server-side validation.
+    private static final String[] MOVES = {"MOVE g1 f3", "MOVE g8 f6", "MOVE f3 g1", "MOVE f6 g8"};
+    private static final int SOCKET_TIMEOUT_MILLIS = 120_000;
+
+    private final String host;
+    private final int port;
+    private final int clients;
+    private final int moves;
+    private final CountDownLatch connected;
+    private final CountDownLatch inGame;
+    private final CountDownLatch finished;
+    private final AtomicInteger errors = new AtomicInteger();
+    private final long[][] roundTrips;
+
+    // Creates a run of the given number of clients, each sending the given number of moves.
+    private ServerLoad(String host, int port, int clients, int moves) {
+        this.host = host;
+        this.port = port;
+        this.clients = clients;
+        this.moves = moves;
+        this.connected = new CountDownLatch(clients);
+        this.inGame = new CountDownLatch(clients);
+        this.finished = new CountDownLatch(clients);
+        this.roundTrips = new long[clients][];
+    }
+
+    // Runs the load test: [--host=H] [--port=N] [--clients=N] [--moves=N] [--server=none|threads|virtual|nio].
+    public static void main(String[] args) throws Exception {
+        String host = "localhost";
+        int port = 5000;
+        int clients = 10_000;
+        int moves = 20;
+        String server = "none";
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--host=")) host = value;
+            else if (arg.startsWith("--port=")) port = Integer.parseInt(value);
+            else if (arg.startsWith("--clients=")) clients = Integer.parseInt(value);
+            else if (arg.startsWith("--moves=")) moves = Integer.parseInt(value);
+            else if (arg.startsWith("--server=")) server = value;
+            else throw new IllegalArgumentException("Unknown argument: " + arg);
+        }
+
+        PrintStream report = System.out;
+        if (!server.equals("none")) startServer(server, port);
+        report.println("Server mode: " + server + ", clients: " + clients + ", moves per client: " + moves);
+        new ServerLoad(host, port, clients, moves).run(report, !server.equals("none"));
+        System.exit(0);
+    }
+
+    // Starts the server on a daemon thread and waits until it accepts connections.
+    private static void startServer(String mode, int port) throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            try {
+                // Only warnings reach the log, so connection and game events stay out of the report and off the hot path.
+                ServerMain.main(new String[]{"--mode=" + mode, "--port=" + port, "--log-level=warn",
+                        "--metrics-port=0"});
+            } catch (IOException e) {
+                throw new IllegalStateException("Server failed", e);
+            }
+        }, "server-main");
+        thread.setDaemon(true);
+        thread.start();
+        for (int attempt = 0; attempt < 100; attempt++) {
+            try (Socket probe = new Socket("localhost", port)) {
+                probe.getOutputStream().write("EXIT\n".getBytes());
+                return;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+        throw new IllegalStateException("Server did not start on port " + port);
+    }
+
+    // Starts every client on its own virtual thread and reports each phase as it completes.
+    private void run(PrintStream report, boolean inProcess) throws InterruptedException {
+        long baselineThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        long baselineHeap = usedHeap();
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                int index = i;
+                executor.execute(() -> runClient(index));
+            }
+
+            connected.await();
+            long connectNanos = System.nanoTime() - start;
+            report.printf("Connected %d clients in %d ms (%.0f connects/s), errors so far %d%n",
+                    clients, connectNanos / 1_000_000, clients * 1e9 / connectNanos, errors.get());
+
+            inGame.await();
+            if (inProcess) {
+                report.printf("All games running: %d platform threads (+%d), %d MB heap in use (+%d MB)%n",
+                        ManagementFactory.getThreadMXBean().getThreadCount(),
+                        ManagementFactory.getThreadMXBean().getThreadCount() - baselineThreads,
+                        usedHeap() >> 20, (usedHeap() - baselineHeap) >> 20);
+            }
+
+            long playStart = System.nanoTime();
+            finished.await();
+            long playNanos = System.nanoTime() - playStart;
+            reportRoundTrips(report, playNanos);
+            if (inProcess) report.println("Server move validation: " + ChessRoom.validationLatency().summary());
+        }
+        report.println("Errors: " + errors.get());
+    }
+
+    // Plays one client: connect, ready up, then alternate moves with the opponent while timing each round trip.
+    private void runClient(int index) {
+        boolean countedConnect = false;
+        boolean countedGame = false;
+        try (Socket socket = new Socket(host, port)) {
+            socket.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            connected.countDown();
+            countedConnect = true;
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            String start = in.readLine();
+            if (start == null || !start.startsWith("START")) throw new IOException("Expected START, got " + start);
+            boolean white = start.startsWith("START white");
+            out.println("READY");
+            String turn;
+            while ((turn = in.readLine()) != null && !turn.startsWith("TURN")) {
+                // Skip anything the server sends before the game starts.
+            }
+            if (turn == null) throw new IOException("Connection closed before TURN");
+            inGame.countDown();
+            countedGame = true;
+            inGame.await();
+
+            long[] samples = new long[moves];
+            int recorded = 0;
+            int ply = 0;
+            long sentAt = 0;
+            if (white) {
+                out.println(MOVES[ply++ % MOVES.length]);
+                sentAt = System.nanoTime();
+            }
+            while (ply < 2 * moves) {
+                String line = in.readLine();
+                if (line == null || line.equals("OPPONENT_LEFT")) throw new IOException("Game ended early at ply " + ply);
+                if (!line.startsWith("MOVE")) continue;
+                if (sentAt != 0) samples[recorded++] = System.nanoTime() - sentAt;
+                if (++ply < 2 * moves) {
+                    out.println(MOVES[ply++ % MOVES.length]);
+                    sentAt = System.nanoTime();
+                }
+            }
+            roundTrips[index] = Arrays.copyOf(samples, recorded);
+            out.println("EXIT");
+        } catch (IOException | InterruptedException e) {
+            errors.incrementAndGet();
+        } finally {
+            if (!countedConnect) connected.countDown();
+            if (!countedGame) inGame.countDown();
+            finished.countDown();
+        }
+    }
+
+    // Prints round-trip percentiles and the overall move rate.
+    private void reportRoundTrips(PrintStream report, long playNanos) {
+        long[] all = Arrays.stream(roundTrips).filter(r -> r != null).flatMapToLong(Arrays::stream).sorted().toArray();
+        if (all.length == 0) {
+            report.println("No moves completed.");
+            return;
+        }
+        report.printf("Move round trips: %d in %d ms (%.0f moves/s relayed)%n",
+                all.length, playNanos / 1_000_000, 2 * all.length * 1e9 / playNanos);
+        report.printf("Round trip us: p50 %d, p90 %d, p99 %d, p99.9 %d, max %d%n",
+                percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), percentile(all, 0.999),
+                all[all.length - 1] / 1000);
+    }
+
+    // Returns the given percentile of sorted nanosecond samples in microseconds.
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1000;
+    }
+
+    // Returns the heap in use after a collection.
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,64 @@
+package bench;
+
+import engine.Engine;
+import engine.SearchLimits;
+import model.Fen;
+import model.Position;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/** Measures Lazy SMP time-to-depth over the middlegame corpus, from one to sixteen search threads. */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SmpScalingBenchmark {
+    @Param({"1", "2", "4", "8", "16"})
+    public int threads;
+
+    @Param({"7"})
+    public int depth;
+
+    @Param({"64"})
+    public int hashMegabytes;
+
+    private Engine engine;
+    private Position[] positions;
+
+    // Creates the engine and loads the corpus once per thread count.
+    @Setup
+    public void setup() {
+        engine = new Engine(hashMegabytes, threads);
+        String[] fens = Positions.MIDDLEGAME;
+        positions = new Position[fens.length];
+        for (int i = 0; i < fens.length; i++) {
+            positions[i] = new Position();
+            Fen.load(fens[i], positions[i]);
+        }
+    }
+
+    // Empties the shared table so every measurement starts cold.
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        engine.newGame();
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    // Searches every corpus position to the fixed depth and returns the total nodes visited.
+    @Benchmark
+    public long timeToDepth() throws InterruptedException, ExecutionException {
+        long nodes = 0;
+        for (Position position : positions) {
+            nodes += engine.search(position, SearchLimits.ofDepth(depth)).get().getNodes();
+        }
+        return nodes;
+    }
+}
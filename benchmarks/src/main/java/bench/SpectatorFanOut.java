@@ -0,0 +1,134 @@
+package bench;
+
+import metrics.LatencyRecorder;
+import server.Broadcast;
+import server.ChessRoom;
+import server.Player;
+
+import java.nio.ByteBuffer;
+
+import protocol.BinaryProtocol;
+
+/**
+ * Plays moves in a room watched by growing crowds of spectators and measures how long after a move each spectator
+ * receives it and how long the whole fan-out takes, once with the shared broadcast buffers and once re-encoding the
+ * move for every spectator as a per-recipient send would:
+ *     java -cp benchmarks/target/benchmarks.jar bench.SpectatorFanOut --spectators=1000,10000,50000 --moves=200
+ */
+public class SpectatorFanOut {
+    // A knight shuffle that stays legal forever.
+    private static final String[] MOVES = {"MOVE g1 f3", "MOVE g8 f6", "MOVE f3 g1", "MOVE f6 g8"};
+    private static final int WARMUP_MOVES = 200;
+
+    // When the move being fanned out was submitted.
+    private static volatile long sent;
+
+    // Runs the benchmark: [--spectators=N,N,...] [--moves=N].
+    public static void main(String[] args) {
+        String[] crowds = {"1000", "10000", "50000"};
+        int moves = 200;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--spectators=")) crowds = value.split(",");
+            else if (arg.startsWith("--moves=")) moves = Integer.parseInt(value);
+            else throw new IllegalArgumentException("Unknown argument: " + arg);
+        }
+
+        for (String crowd : crowds) {
+            int spectators = Integer.parseInt(crowd);
+            run(spectators, WARMUP_MOVES, true, false);
+            run(spectators, WARMUP_MOVES, false, false);
+            run(spectators, moves, true, true);
+            run(spectators, moves, false, true);
+        }
+    }
+
+    // Plays the moves in a fresh room with the given crowd and, unless warming up, prints what the spectators measured.
+    private static void run(int count, int moves, boolean shared, boolean print) {
+        Player white = new Seat("white");
+        Player black = new Seat("black");
+        ChessRoom room = new ChessRoom(1, white, black, null, closed -> { });
+        room.setReady(white);
+        room.setReady(black);
+
+        LatencyRecorder delivery = new LatencyRecorder();
+        Spectator[] spectators = new Spectator[count];
+        for (int i = 0; i < count; i++) {
+            // Alternate framings so both encodings are exercised, as with a mixed crowd of clients.
+            spectators[i] = new Spectator("spectator-" + i, i % 2 == 0, shared, delivery);
+            room.watch(spectators[i]);
+        }
+
+        LatencyRecorder fanOut = new LatencyRecorder();
+        for (int i = 0; i < moves; i++) {
+            sent = System.nanoTime();
+            room.forwardMove(i % 2 == 0 ? white : black, MOVES[i % MOVES.length]);
+            fanOut.record(System.nanoTime() - sent);
+        }
+        room.close();
+
+        if (!print) return;
+        long bytes = 0;
+        for (Spectator spectator : spectators) bytes += spectator.bytes;
+        System.out.println(count + " spectators, " + (shared ? "shared" : "re-encoded") + ": delivery us p50 "
+                + delivery.percentileMicros(0.50) + ", p99 " + delivery.percentileMicros(0.99) + ", max "
+                + delivery.maxMicros() + "; whole fan-out us p50 " + fanOut.percentileMicros(0.50) + ", p99 "
+                + fanOut.percentileMicros(0.99) + ", max " + fanOut.maxMicros() + "; " + bytes / moves + " bytes per move");
+    }
+
+    /** A seated player that ignores what it is sent. */
+    private record Seat(String name) implements Player {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void sendMessage(String msg) {
+        }
+
+        @Override
+        public void setRoom(ChessRoom room) {
+        }
+    }
+
+    /** A spectator that takes its bytes as a connection would and records how long after the move they arrived. */
+    private static final class Spectator implements Player {
+        private final String name;
+        private final boolean binary;
+        private final boolean shared;
+        private final LatencyRecorder delivery;
+        private long bytes;
+
+        Spectator(String name, boolean binary, boolean shared, LatencyRecorder delivery) {
+            this.name = name;
+            this.binary = binary;
+            this.shared = shared;
+            this.delivery = delivery;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        // Snapshots and results are not moves, so they are not timed.
+        @Override
+        public void sendMessage(String msg) {
+        }
+
+        // Takes a view of the shared bytes, or encodes the line afresh as a per-recipient send would.
+        @Override
+        public void sendBroadcast(Broadcast message) {
+            if (!message.text().startsWith("MOVE")) return;
+            ByteBuffer encoded = shared ? message.bytes(binary)
+                    : ByteBuffer.wrap(binary ? BinaryProtocol.encode(message.text()) : (message.text() + "\n").getBytes());
+            bytes += encoded.remaining();
+            delivery.record(System.nanoTime() - sent);
+        }
+
+        @Override
+        public void setRoom(ChessRoom room) {
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import protocol.BinaryProtocol;
+
+/** Connects to the chess server without any UI, sending protocol lines and delivering every server message as a line. */
+public class ChessClient implements AutoCloseable {
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final int MAX_LINE = 4096;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final boolean binary;
+    private final ReentrantLock sendLock = new ReentrantLock();
+    private final AtomicBoolean reading = new AtomicBoolean();
+    private volatile Consumer<String> messageHandler;
+    private volatile Consumer<IOException> closeHandler = error -> { };
+    private volatile String sessionToken;
+    private volatile boolean closed;
+
+    // Connects with the text protocol.
+    public ChessClient(String host, int port) throws IOException {
+        this(host, port, false);
+    }
+
+    // Connects and, when asked, negotiates binary framing; either way the handler sees plain protocol lines.
+    public ChessClient(String host, int port, boolean binary) throws IOException {
+        this.socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        this.binary = binary;
+        if (binary) writeAndFlush((BinaryProtocol.HELLO + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Sets who receives server messages; the first call starts reading, so nothing arrives before a handler exists.
+    public void setMessageHandler(Consumer<String> handler) {
+        this.messageHandler = handler;
+        if (reading.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("chess-client-reader").start(this::readLoop);
+        }
+    }
+
+    // Sets what runs once the connection ends: with null after a clean close, or with the error that ended it.
+    public void setCloseHandler(Consumer<IOException> handler) {
+        this.closeHandler = handler;
+    }
+
+    // Sends a protocol line, as a frame once binary framing is in use; a failed send closes the connection.
+    public void send(String message) {
+        if (closed) return;
+        byte[] bytes = binary ? BinaryProtocol.encode(message) : (message + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            writeAndFlush(bytes);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    // Asks the server to seat this connection in the game the token was issued for.
+    public void resume(String token) {
+        send("RESUME " + token);
+    }
+
+    // Returns the token from the last START, which lets a new connection resume the seat, or null before any game.
+    public String sessionToken() {
+        return sessionToken;
+    }
+
+    // Returns whether the connection is still open.
+    public boolean isConnected() {
+        return !closed;
+    }
+
+    // Closes the connection; the reader then stops and the close handler runs.
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closing; nothing more to release.
+        }
+    }
+
+    // Writes bytes under the send lock so lines from different threads never interleave.
+    private void writeAndFlush(byte[] bytes) throws IOException {
+        sendLock.lock();
+        try {
+            out.write(bytes);
+            out.flush();
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    // Reads lines, then frames once the server accepts binary framing, and hands each message to the handler.
+    private void readLoop() {
+        IOException error = null;
+        boolean framed = false;
+        try {
+            while (true) {
+                String message = framed ? readFrame() : readLine();
+                if (message == null) break;
+                if (!framed && binary && message.equals(BinaryProtocol.ACCEPTED)) {
+                    framed = true;
+                    continue;
+                }
+                if (message.startsWith("START ")) {
+                    String[] parts = message.split(" ");
+                    if (parts.length > 2) sessionToken = parts[2];
+                }
+                messageHandler.accept(message);
+            }
+        } catch (IOException e) {
+            if (!closed) error = e;
+        } finally {
+            close();
+            closeHandler.accept(error);
+        }
+    }
+
+    // Reads one newline-terminated line, or returns null at end of stream.
+    private String readLine() throws IOException {
+        byte[] line = new byte[64];
+        int length = 0;
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) return length == 0 ? null : new String(line, 0, length, StandardCharsets.UTF_8);
+            if (length == MAX_LINE) throw new IOException("line longer than " + MAX_LINE + " bytes");
+            if (length == line.length) line = Arrays.copyOf(line, line.length * 2);
+            line[length++] = (byte) b;
+        }
+        if (length > 0 && line[length - 1] == '\r') length--;
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Reads one frame and decodes it to its text protocol line, or returns null at end of stream.
+    private String readFrame() throws IOException {
+        int length;
+        try {
+            length = in.readUnsignedShort();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length == 0 || length > BinaryProtocol.MAX_FRAME) throw new IOException("bad frame length " + length);
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return BinaryProtocol.decode(frame[0] & 0xFF, ByteBuffer.wrap(frame, 1, length - 1));
+    }
+}
@@ -0,0 +1,257 @@
+package client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import metrics.LatencyRecorder;
+import model.Board;
+import model.Piece;
+import model.Position;
+import model.RuleEngine;
+
+/**
+ * Simulates many players against a running server: each connection plays random legal moves after a fixed think time,
+ * and the run reports connect rate, move latency percentiles and error counts:
+ *     java -cp target/Chess.jar client.LoadGenerator --host=127.0.0.1 --clients=5000 --think-ms=200 --max-plies=60
+ * Move latency is the time from sending a move to the opponent's reply arriving, less the opponent's think time, so it
+ * assumes every opponent is another generated player. Raise the open-file limit (ulimit -n) above the client count.
+ */
+public class LoadGenerator {
+    private static final long REPORT_PERIOD_SECONDS = 5;
+
+    private final String host;
+    private final int port;
+    private final int clients;
+    private final long thinkNanos;
+    private final int maxPlies;
+    private final boolean binary;
+    private final ScheduledExecutorService thinkers;
+    private final CountDownLatch done;
+    private final LatencyRecorder moveLatency = new LatencyRecorder();
+    private final LongAdder connected = new LongAdder();
+    private final LongAdder connectErrors = new LongAdder();
+    private final LongAdder protocolErrors = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder gamesStarted = new LongAdder();
+    private final LongAdder gamesFinished = new LongAdder();
+    private final LongAdder movesSent = new LongAdder();
+
+    // Creates a run of the given number of players.
+    private LoadGenerator(String host, int port, int clients, long thinkMillis, int maxPlies, boolean binary) {
+        this.host = host;
+        this.port = port;
+        this.clients = clients;
+        this.thinkNanos = TimeUnit.MILLISECONDS.toNanos(thinkMillis);
+        this.maxPlies = maxPlies;
+        this.binary = binary;
+        this.done = new CountDownLatch(clients);
+        this.thinkers = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+            Thread thread = new Thread(task, "think-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Runs the load: [--host=H] [--port=N] [--clients=N] [--think-ms=N] [--max-plies=N] [--connect-rate=N per second,
+    // 0 for unpaced] [--binary] [--timeout-seconds=N].
+    public static void main(String[] args) throws InterruptedException {
+        String host = "localhost";
+        int port = 5000;
+        int clients = 1000;
+        long thinkMillis = 100;
+        int maxPlies = 60;
+        int connectRate = 0;
+        boolean binary = false;
+        long timeoutSeconds = 600;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--host=")) host = value;
+            else if (arg.startsWith("--port=")) port = Integer.parseInt(value);
+            else if (arg.startsWith("--clients=")) clients = Integer.parseInt(value);
+            else if (arg.startsWith("--think-ms=")) thinkMillis = Long.parseLong(value);
+            else if (arg.startsWith("--max-plies=")) maxPlies = Integer.parseInt(value);
+            else if (arg.startsWith("--connect-rate=")) connectRate = Integer.parseInt(value);
+            else if (arg.equals("--binary")) binary = true;
+            else if (arg.startsWith("--timeout-seconds=")) timeoutSeconds = Long.parseLong(value);
+            else throw new IllegalArgumentException("Unknown argument: " + arg);
+        }
+
+        System.out.println("Clients: " + clients + " against " + host + ":" + port + ", think " + thinkMillis
+                + " ms, up to " + maxPlies + " plies, " + (binary ? "binary" : "text") + " framing");
+        new LoadGenerator(host, port, clients, thinkMillis, maxPlies, binary).run(connectRate, timeoutSeconds);
+        System.exit(0);
+    }
+
+    // Opens the connections at the given pace, reports progress while the games run, then prints the totals.
+    private void run(int connectRate, long timeoutSeconds) throws InterruptedException {
+        long start = System.nanoTime();
+        thinkers.scheduleAtFixedRate(() -> reportProgress(start), REPORT_PERIOD_SECONDS, REPORT_PERIOD_SECONDS,
+                TimeUnit.SECONDS);
+        CountDownLatch attempted = new CountDownLatch(clients);
+        try (ExecutorService connectors = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                if (connectRate > 0) {
+                    long due = start + i * 1_000_000_000L / connectRate;
+                    for (long now; (now = System.nanoTime()) < due; ) LockSupport.parkNanos(due - now);
+                }
+                connectors.execute(() -> {
+                    connect();
+                    attempted.countDown();
+                });
+            }
+            attempted.await();
+        }
+        long connectNanos = System.nanoTime() - start;
+        System.out.printf("Connected %d of %d clients in %d ms (%.0f connects/s), connect errors %d%n",
+                connected.sum(), clients, connectNanos / 1_000_000, connected.sum() * 1e9 / connectNanos,
+                connectErrors.sum());
+
+        boolean finished = done.await(timeoutSeconds, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+        if (!finished) System.out.println("Timed out after " + timeoutSeconds + " s with " + done.getCount() + " players still playing");
+        System.out.printf("Games started %d, finished %d; moves sent %d (%.0f moves/s)%n", gamesStarted.sum(),
+                gamesFinished.sum(), movesSent.sum(), movesSent.sum() * 1e9 / elapsed);
+        System.out.println("Move latency: " + moveLatency.summary());
+        System.out.println("Errors: connect " + connectErrors.sum() + ", protocol " + protocolErrors.sum()
+                + ", dropped connections " + dropped.sum());
+    }
+
+    // Connects one player and lets its handler drive the game from there.
+    private void connect() {
+        try {
+            ChessClient client = new ChessClient(host, port, binary);
+            connected.increment();
+            new SimulatedPlayer(client).start();
+        } catch (IOException e) {
+            connectErrors.increment();
+            done.countDown();
+        }
+    }
+
+    // Prints one line of running totals.
+    private void reportProgress(long start) {
+        System.out.printf("[%ds] connected %d, games started %d, finished %d, moves %d, move latency p50 %d us, "
+                        + "p99 %d us, errors %d%n", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start),
+                connected.sum(), gamesStarted.sum(), gamesFinished.sum(), movesSent.sum(),
+                moveLatency.percentileMicros(0.50), moveLatency.percentileMicros(0.99),
+                connectErrors.sum() + protocolErrors.sum() + dropped.sum());
+    }
+
+    /** One connection's game: it mirrors the board, picks random legal moves and sends them after the think time. */
+    private final class SimulatedPlayer {
+        private final ChessClient client;
+        private final Board board = new Board();
+        private final RuleEngine ruleEngine = new RuleEngine(board);
+        private final List<String> froms = new ArrayList<>();
+        private final List<String> tos = new ArrayList<>();
+        private final List<String> targets = new ArrayList<>();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile long lastSent;
+        private String color;
+        private int plies;
+
+        SimulatedPlayer(ChessClient client) {
+            this.client = client;
+        }
+
+        // Starts reading; a connection that ends before the game does counts as dropped.
+        void start() {
+            client.setCloseHandler(error -> {
+                if (finish()) dropped.increment();
+            });
+            client.setMessageHandler(this::handleMessage);
+        }
+
+        // Reacts to a server message on the client's reader thread, which alone touches the board.
+        private void handleMessage(String msg) {
+            if (msg.startsWith("START")) {
+                color = msg.split(" ")[1];
+                gamesStarted.increment();
+                client.send("READY");
+            } else if (msg.startsWith("TURN")) {
+                if (msg.split(" ")[1].equals(color)) planMove();
+            } else if (msg.startsWith("MOVE")) {
+                long sent = lastSent;
+                if (sent != 0) moveLatency.record(System.nanoTime() - sent - thinkNanos);
+                String[] parts = msg.split(" ");
+                char promotion = parts.length > 4 && parts[3].equals("PROMOTE") ? parts[4].charAt(0) : 'q';
+                apply(parts[1], parts[2], promotion);
+                planMove();
+            } else if (msg.startsWith("ERROR")) {
+                protocolErrors.increment();
+            } else if (msg.startsWith("GAME_OVER") || msg.equals("OPPONENT_LEFT")) {
+                if (finish()) gamesFinished.increment();
+            }
+        }
+
+        // Picks a random legal move and sends it once the think time has passed, or resigns at the ply limit.
+        private void planMove() {
+            if (finished.get()) return;
+            if (plies >= maxPlies) {
+                client.send("EXIT");
+                if (finish()) gamesFinished.increment();
+                return;
+            }
+            froms.clear();
+            tos.clear();
+            for (int square = 0; square < 64; square++) {
+                String from = Position.squareName(square);
+                Piece piece = board.getPiece(from);
+                if (piece == null || !piece.getColor().equals(color)) continue;
+                targets.clear();
+                ruleEngine.addValidTargets(from, color, targets);
+                for (String to : targets) {
+                    froms.add(from);
+                    tos.add(to);
+                }
+            }
+            // With no legal move the game is over, and the server says so.
+            if (froms.isEmpty()) return;
+
+            int choice = ThreadLocalRandom.current().nextInt(froms.size());
+            String move = "MOVE " + froms.get(choice) + " " + tos.get(choice);
+            apply(froms.get(choice), tos.get(choice), 'q');
+            if (thinkNanos == 0) {
+                send(move);
+            } else {
+                thinkers.schedule(() -> send(move), thinkNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        // Sends a move and starts its latency clock.
+        private void send(String move) {
+            lastSent = System.nanoTime();
+            client.send(move);
+            movesSent.increment();
+        }
+
+        // Plays a move on the mirrored board, promoting a pawn that reaches the last rank.
+        private void apply(String from, String to, char promotion) {
+            board.movePiece(from, to);
+            Piece moved = board.getPiece(to);
+            if (ruleEngine.shouldPromote(to, moved)) {
+                int[] square = Board.fromChessNotation(to);
+                board.setPiece(square[0], square[1], ruleEngine.promotePawn(moved.getColor(), promotion));
+            }
+            plies++;
+        }
+
+        // Ends this player's run once, closing the connection; returns false when it had already ended.
+        private boolean finish() {
+            if (!finished.compareAndSet(false, true)) return false;
+            client.close();
+            done.countDown();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package engine;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.Board;
+import model.Position;
+
+/**
+ * Runs searches on dedicated background threads so callers such as the JavaFX or network threads never block.
+ * With more than one thread the engine uses Lazy SMP: helpers search the same root and share only the table.
+ */
+public class Engine {
+    public static final int DEFAULT_HASH_MEGABYTES = 16;
+
+    private final TranspositionTable table;
+    private final Search[] searches;
+    private final ExecutorService executor;
+    private final ExecutorService helpers;
+    // Searches are numbered as they are submitted; stop() ends every search up to the latest, even one still queued.
+    private final AtomicLong submitted = new AtomicLong();
+    private volatile long stoppedThrough;
+
+    // Creates a single-threaded engine with a transposition table of the default size.
+    public Engine() {
+        this(DEFAULT_HASH_MEGABYTES, 1);
+    }
+
+    // Creates an engine with a transposition table of the given size and the given number of search threads.
+    public Engine(int hashMegabytes, int threads) {
+        if (threads < 1) throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        this.table = new TranspositionTable(hashMegabytes);
+        this.searches = new Search[threads];
+        for (int i = 0; i < threads; i++) searches[i] = new Search(table);
+        this.executor = Executors.newSingleThreadExecutor(daemonThreads("engine-search"));
+        this.helpers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, daemonThreads("engine-helper-")) : null;
+    }
+
+    // Creates thread factories for daemon threads, numbering them when the name ends with a dash.
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger(1);
+        return task -> {
+            Thread thread = new Thread(task, name.endsWith("-") ? name + count.getAndIncrement() : name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Returns the number of search threads.
+    public int getThreads() {
+        return searches.length;
+    }
+
+    // Starts searching a snapshot of the position and completes the future with the result.
+    public CompletableFuture<SearchResult> search(Position root, SearchLimits limits) {
+        Position snapshot = new Position();
+        snapshot.copyFrom(root);
+        long number = submitted.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> runParallel(snapshot, limits, number), executor);
+    }
+
+    // Starts searching the board for the given color and completes the future with the result.
+    public CompletableFuture<SearchResult> search(Board board, String color, SearchLimits limits) {
+        Position snapshot = new Position();
+        snapshot.load(board, color);
+        long number = submitted.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> runParallel(snapshot, limits, number), executor);
+    }
+
+    // Runs the main search under the limits while the helpers fill the shared table, then merges node counts. The main
+    // search is armed here, once the previous one has finished, and stopped at once if stop() came while it was queued.
+    private SearchResult runParallel(Position root, SearchLimits limits, long number) {
+        searches[0].arm();
+        if (number <= stoppedThrough) searches[0].stop();
+        Future<?>[] running = new Future<?>[searches.length];
+        for (int i = 1; i < searches.length; i++) {
+            Search helper = searches[i];
+            int index = i;
+            helper.arm();
+            running[i] = helpers.submit(() -> helper.help(root, index));
+        }
+
+        SearchResult main = searches[0].run(root, limits);
+        if (searches.length == 1) return main;
+
+        for (int i = 1; i < searches.length; i++) searches[i].stop();
+        long[] threadNodes = new long[searches.length];
+        threadNodes[0] = searches[0].getNodes();
+        for (int i = 1; i < searches.length; i++) {
+            try {
+                running[i].get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search helper failed", e.getCause());
+            }
+            threadNodes[i] = searches[i].getNodes();
+        }
+        return new SearchResult(main.getBestMove(), main.getScore(), main.getDepth(), main.getElapsedNanos(),
+                main.getPrincipalVariation(), threadNodes);
+    }
+
+    // Stops the running search, which then completes with its best move so far, and any search still queued.
+    public void stop() {
+        stoppedThrough = submitted.get();
+        searches[0].stop();
+    }
+
+    // Forgets everything stored in the transposition table before the next search.
+    public void newGame() {
+        executor.execute(table::clear);
+    }
+
+    // Stops searching and releases the search threads.
+    public void shutdown() {
+        for (Search search : searches) search.stop();
+        executor.shutdownNow();
+        if (helpers != null) helpers.shutdownNow();
+    }
+}
@@ -0,0 +1,284 @@
+package engine;
+
+import java.util.Arrays;
+
+import model.Move;
+import model.MoveGenerator;
+import model.Position;
+
+/** Iterative-deepening alpha-beta search with a transposition table, MVV-LVA and killer move ordering; one instance per thread. */
+public class Search {
+    public static final int INFINITY = 32000;
+    public static final int MATE = 31000;
+    public static final int MAX_PLY = 128;
+
+    private static final int MATE_BOUND = MATE - MAX_PLY;
+    private static final int TT_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 20;
+    private static final int KILLER_SCORE = 1 << 19;
+    private static final int CHECK_INTERVAL = 2047;
+    private static final SearchLimits UNLIMITED = new SearchLimits(0, 0, 0);
+
+    private final TranspositionTable table;
+    private final Position position = new Position();
+    private final int[][] moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] scores = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+
+    private volatile boolean stopped;
+    private long nodes;
+    private long nodeLimit;
+    private long deadline;
+
+    // Creates a search that shares the given transposition table.
+    public Search(TranspositionTable table) {
+        this.table = table;
+    }
+
+    // Searches the position within the limits and returns the best move of the deepest completed iteration; the stop
+    // flag is left as arm() and stop() set it, so a stop that arrives before the search begins still ends it.
+    public SearchResult run(Position root, SearchLimits limits) {
+        return iterate(root, limits, 1);
+    }
+
+    // Clears the stop flag before the search is started, so a stop issued right after is never lost.
+    void arm() {
+        stopped = false;
+    }
+
+    // Searches as a Lazy SMP helper until stopped, odd helpers starting a ply deeper to vary the shared table.
+    void help(Position root, int index) {
+        iterate(root, UNLIMITED, 1 + (index & 1));
+    }
+
+    // Deepens from the start depth until a limit is hit or the search is stopped.
+    private SearchResult iterate(Position root, SearchLimits limits, int startDepth) {
+        long start = System.nanoTime();
+        position.copyFrom(root);
+        nodes = 0;
+        nodeLimit = limits.getNodes() > 0 ? limits.getNodes() : Long.MAX_VALUE;
+        deadline = limits.getTimeMillis() > 0 ? start + limits.getTimeMillis() * 1_000_000L : Long.MAX_VALUE;
+        int maxDepth = limits.getDepth() > 0 ? Math.min(limits.getDepth(), MAX_PLY - 1) : MAX_PLY - 1;
+        for (int[] pair : killers) pair[0] = pair[1] = Move.NONE;
+
+        int bestMove = Move.NONE;
+        int bestScore = 0;
+        int completedDepth = 0;
+        int[] bestLine = new int[0];
+        for (int depth = Math.min(startDepth, maxDepth); depth <= maxDepth; depth++) {
+            int score = alphaBeta(depth, -INFINITY, INFINITY, 0);
+            if (stopped && depth > startDepth) break;
+            if (pvLength[0] > 0) {
+                bestMove = pv[0][0];
+                bestLine = Arrays.copyOf(pv[0], pvLength[0]);
+            }
+            bestScore = score;
+            completedDepth = depth;
+            if (stopped || Math.abs(score) >= MATE_BOUND) break;
+        }
+        if (bestMove == Move.NONE && MoveGenerator.generateLegal(position, moves[0]) > 0) bestMove = moves[0][0];
+        return new SearchResult(bestMove, bestScore, completedDepth, System.nanoTime() - start, bestLine,
+                new long[]{nodes});
+    }
+
+    // Asks a running search to return as soon as possible.
+    public void stop() {
+        stopped = true;
+    }
+
+    // Returns the nodes this thread visited in the current or last search.
+    public long getNodes() {
+        return nodes;
+    }
+
+    // Negamax alpha-beta with principal variation search, returning the score for the side to move.
+    private int alphaBeta(int depth, int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+        if (ply > 0 && (position.getHalfmoveClock() >= 100 || position.isRepetition())) return 0;
+        if (ply >= MAX_PLY - 1) return Evaluator.evaluate(position);
+
+        int us = position.getSideToMove();
+        boolean inCheck = position.isInCheck(us);
+        if (inCheck) depth++;
+        if (depth <= 0) return quiesce(alpha, beta, ply);
+        if (countNode()) return 0;
+
+        long key = position.getZobristKey();
+        long entry = table.probe(key);
+        int ttMove = Move.NONE;
+        if (entry != 0) {
+            ttMove = TranspositionTable.move(entry);
+            // Cutoffs only at null-window nodes keep the principal variation whole.
+            if (ply > 0 && beta - alpha == 1 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int[] buffer = moves[ply];
+        int count = MoveGenerator.generateLegal(position, buffer);
+        if (count == 0) return inCheck ? -MATE + ply : 0;
+        scoreMoves(buffer, scores[ply], count, ttMove, ply);
+
+        int originalAlpha = alpha;
+        int bestMove = Move.NONE;
+        int bestScore = -INFINITY;
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(buffer, scores[ply], i, count);
+            position.makeMove(move);
+            int score;
+            if (i == 0) {
+                score = -alphaBeta(depth - 1, -beta, -alpha, ply + 1);
+            } else {
+                score = -alphaBeta(depth - 1, -alpha - 1, -alpha, ply + 1);
+                if (score > alpha && score < beta) score = -alphaBeta(depth - 1, -beta, -alpha, ply + 1);
+            }
+            position.unmakeMove();
+            if (stopped) return 0;
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+            }
+            if (score > alpha) {
+                alpha = score;
+                updatePrincipalVariation(move, ply);
+            }
+            if (alpha >= beta) {
+                if (!Move.isCapture(move) && !Move.isPromotion(move)) storeKiller(move, ply);
+                break;
+            }
+        }
+
+        int bound = bestScore >= beta ? TranspositionTable.LOWER
+                : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, bestMove, toTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    // Resolves captures and promotions until the position is quiet, searching every evasion when in check.
+    private int quiesce(int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+        if (countNode()) return 0;
+        if (ply >= MAX_PLY - 1) return Evaluator.evaluate(position);
+
+        boolean inCheck = position.isInCheck(position.getSideToMove());
+        int bestScore = -INFINITY;
+        if (!inCheck) {
+            bestScore = Evaluator.evaluate(position);
+            if (bestScore >= beta) return bestScore;
+            if (bestScore > alpha) alpha = bestScore;
+        }
+
+        int[] buffer = moves[ply];
+        int total = MoveGenerator.generateLegal(position, buffer);
+        if (total == 0) return inCheck ? -MATE + ply : 0;
+
+        int count = 0;
+        for (int i = 0; i < total; i++) {
+            int move = buffer[i];
+            if (inCheck || Move.isCapture(move) || Move.isPromotion(move)) buffer[count++] = move;
+        }
+        scoreMoves(buffer, scores[ply], count, Move.NONE, ply);
+
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(buffer, scores[ply], i, count);
+            position.makeMove(move);
+            int score = -quiesce(-beta, -alpha, ply + 1);
+            position.unmakeMove();
+            if (stopped) return 0;
+
+            if (score > bestScore) bestScore = score;
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) break;
+            }
+        }
+        return bestScore;
+    }
+
+    // Counts a node and returns whether the time or node budget has run out.
+    private boolean countNode() {
+        nodes++;
+        if ((nodes & CHECK_INTERVAL) == 0 && (nodes >= nodeLimit || System.nanoTime() >= deadline)) stopped = true;
+        return stopped;
+    }
+
+    // Assigns ordering scores: table move first, then captures by MVV-LVA, promotions, killers and quiet moves.
+    private void scoreMoves(int[] buffer, int[] ordering, int count, int ttMove, int ply) {
+        for (int i = 0; i < count; i++) {
+            int move = buffer[i];
+            int score;
+            if (move == ttMove) {
+                score = TT_MOVE_SCORE;
+            } else if (Move.isCapture(move)) {
+                int victim = Move.flag(move) == Move.EN_PASSANT ? Position.PAWN
+                        : Position.typeOf(position.pieceAt(Move.to(move)));
+                int attacker = Position.typeOf(position.pieceAt(Move.from(move)));
+                score = CAPTURE_SCORE + victim * 8 - attacker;
+                if (Move.isPromotion(move)) score += Move.promotionType(move);
+            } else if (Move.isPromotion(move)) {
+                score = CAPTURE_SCORE - 8 + Move.promotionType(move);
+            } else if (move == killers[ply][0]) {
+                score = KILLER_SCORE + 1;
+            } else if (move == killers[ply][1]) {
+                score = KILLER_SCORE;
+            } else {
+                score = 0;
+            }
+            ordering[i] = score;
+        }
+    }
+
+    // Swaps the highest-scored remaining move into the given index and returns it.
+    private static int pickNext(int[] buffer, int[] ordering, int index, int count) {
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (ordering[i] > ordering[best]) best = i;
+        }
+        int move = buffer[best];
+        buffer[best] = buffer[index];
+        buffer[index] = move;
+        int score = ordering[best];
+        ordering[best] = ordering[index];
+        ordering[index] = score;
+        return move;
+    }
+
+    // Remembers a quiet move that caused a cutoff at the ply.
+    private void storeKiller(int move, int ply) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+    }
+
+    // Prepends the move to the principal variation found below it.
+    private void updatePrincipalVariation(int move, int ply) {
+        pv[ply][0] = move;
+        int length = pvLength[ply + 1];
+        System.arraycopy(pv[ply + 1], 0, pv[ply], 1, length);
+        pvLength[ply] = length + 1;
+    }
+
+    // Converts a mate score relative to the root into one relative to the stored node.
+    private static int toTable(int score, int ply) {
+        if (score >= MATE_BOUND) return score + ply;
+        if (score <= -MATE_BOUND) return score - ply;
+        return score;
+    }
+
+    // Converts a stored mate score back to one relative to the root.
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE_BOUND) return score - ply;
+        if (score <= -MATE_BOUND) return score + ply;
+        return score;
+    }
+}
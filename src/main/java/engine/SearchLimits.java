@@ -0,0 +1,45 @@
+package engine;
+
+/** Bounds a search by depth, wall-clock time and node count; zero means unbounded. */
+public final class SearchLimits {
+    private final int depth;
+    private final long timeMillis;
+    private final long nodes;
+
+    // Creates limits from a maximum depth, time budget and node budget.
+    public SearchLimits(int depth, long timeMillis, long nodes) {
+        this.depth = depth;
+        this.timeMillis = timeMillis;
+        this.nodes = nodes;
+    }
+
+    // Creates limits that only bound the search time.
+    public static SearchLimits ofTime(long timeMillis) {
+        return new SearchLimits(0, timeMillis, 0);
+    }
+
+    // Creates limits that only bound the search depth.
+    public static SearchLimits ofDepth(int depth) {
+        return new SearchLimits(depth, 0, 0);
+    }
+
+    // Creates limits that only bound the number of nodes searched.
+    public static SearchLimits ofNodes(long nodes) {
+        return new SearchLimits(0, 0, nodes);
+    }
+
+    // Returns the maximum depth, or zero when unbounded.
+    public int getDepth() {
+        return depth;
+    }
+
+    // Returns the time budget in milliseconds, or zero when unbounded.
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    // Returns the node budget, or zero when unbounded.
+    public long getNodes() {
+        return nodes;
+    }
+}
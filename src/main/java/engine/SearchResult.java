@@ -0,0 +1,77 @@
+package engine;
+
+import model.Move;
+
+/** Holds the outcome of a search: best move, score, principal variation and effort spent. */
+public class SearchResult {
+    private final int bestMove;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long elapsedNanos;
+    private final int[] principalVariation;
+    private final long[] threadNodes;
+
+    // Creates a result from the completed search values and the nodes each search thread visited.
+    public SearchResult(int bestMove, int score, int depth, long elapsedNanos, int[] principalVariation,
+                        long[] threadNodes) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.elapsedNanos = elapsedNanos;
+        this.principalVariation = principalVariation;
+        this.threadNodes = threadNodes;
+        long total = 0;
+        for (long count : threadNodes) total += count;
+        this.nodes = total;
+    }
+
+    // Returns the encoded best move, or Move.NONE if the side to move has no legal move.
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    // Returns the score in centipawns from the side to move's point of view.
+    public int getScore() {
+        return score;
+    }
+
+    // Returns the deepest completed iteration.
+    public int getDepth() {
+        return depth;
+    }
+
+    // Returns the number of nodes visited by all search threads.
+    public long getNodes() {
+        return nodes;
+    }
+
+    // Returns the nodes visited by each search thread, the main thread first.
+    public long[] getThreadNodes() {
+        return threadNodes.clone();
+    }
+
+    // Returns the wall-clock time spent searching in nanoseconds.
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    // Returns the search speed in nodes per second.
+    public long getNodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1_000_000_000L / elapsedNanos;
+    }
+
+    // Returns the principal variation as encoded moves.
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
+
+    // Returns a one-line summary with the principal variation in coordinate notation.
+    @Override
+    public String toString() {
+        StringBuilder pv = new StringBuilder();
+        for (int move : principalVariation) pv.append(' ').append(Move.toNotation(move));
+        return "depth " + depth + " score " + score + " nodes " + nodes + " nps " + getNodesPerSecond()
+                + " threads " + threadNodes.length + " pv" + pv;
+    }
+}
@@ -0,0 +1,79 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size transposition table packed into a primitive long array, shared by search threads without locks.
+ * Each entry stores the key XORed with its data, so a torn entry written by two threads at once fails verification.
+ */
+public class TranspositionTable {
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+
+    private static final long VALID = 1L << 42;
+
+    private final long[] table;
+    private final int mask;
+
+    // Creates a table of at most the given size, rounded down to a power-of-two number of entries.
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max(1024L, (long) megabytes * 1024 * 1024 / 16);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 28));
+        this.table = new long[size * 2];
+        this.mask = size - 1;
+    }
+
+    // Returns the packed data stored for the key, or zero when there is none or the entry is torn.
+    public long probe(long key) {
+        int index = ((int) key & mask) * 2;
+        long data = table[index + 1];
+        return (table[index] ^ data) == key ? data : 0L;
+    }
+
+    // Stores a search result, keeping a deeper entry for the same key.
+    public void store(long key, int move, int score, int depth, int bound) {
+        int index = ((int) key & mask) * 2;
+        long existing = table[index + 1];
+        if ((table[index] ^ existing) == key && depth(existing) > depth && bound != EXACT) return;
+        long data = pack(move, score, depth, bound);
+        table[index] = key ^ data;
+        table[index + 1] = data;
+    }
+
+    // Removes every entry.
+    public void clear() {
+        Arrays.fill(table, 0L);
+    }
+
+    // Returns the number of entries the table holds.
+    public int capacity() {
+        return mask + 1;
+    }
+
+    // Packs a move, score, depth and bound into one long with a validity bit.
+    static long pack(int move, int score, int depth, int bound) {
+        return (move & 0xFFFFL) | ((score & 0xFFFFL) << 16) | ((long) (depth & 0xFF) << 32)
+                | ((long) bound << 40) | VALID;
+    }
+
+    // Returns the move of packed entry data.
+    public static int move(long data) {
+        return (int) (data & 0xFFFF);
+    }
+
+    // Returns the score of packed entry data.
+    public static int score(long data) {
+        return (short) (data >>> 16);
+    }
+
+    // Returns the search depth of packed entry data.
+    public static int depth(long data) {
+        return (int) ((data >>> 32) & 0xFF);
+    }
+
+    // Returns the bound type of packed entry data.
+    public static int bound(long data) {
+        return (int) ((data >>> 40) & 3);
+    }
+}
@@ -0,0 +1,114 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, about six percent precision from nanoseconds to hours. Samples
+ * land in one of several stripes chosen by thread, so threads recording at once rarely touch the same cache line; the
+ * count, percentiles and maximum are merged from the stripes only when they are read.
+ */
+public class LatencyRecorder {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+    // The smallest power of two not below the number of processors.
+    private static final int STRIPES = 1 << 32 - Integer.numberOfLeadingZeros(PROCESSORS - 1);
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder total = new LongAdder();
+
+    // Creates an empty histogram.
+    public LatencyRecorder() {
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe();
+    }
+
+    // Records one latency sample in nanoseconds.
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        Stripe stripe = stripes[(int) Thread.currentThread().threadId() & (STRIPES - 1)];
+        stripe.counts.incrementAndGet(bucketOf(nanos));
+        total.add(nanos);
+        // Only a new maximum writes, and only to this stripe's own maximum.
+        if (nanos > stripe.max.get()) stripe.max.accumulateAndGet(nanos, Math::max);
+    }
+
+    // Returns the number of samples recorded.
+    public long count() {
+        long count = 0;
+        for (Stripe stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) count += stripe.counts.get(i);
+        }
+        return count;
+    }
+
+    // Returns the sum of all samples in nanoseconds.
+    public long totalNanos() {
+        return total.sum();
+    }
+
+    // Returns the largest sample in microseconds.
+    public long maxMicros() {
+        return maxNanos() / 1000;
+    }
+
+    // Returns the upper bound of the bucket holding the given fraction of samples, in microseconds.
+    public long percentileMicros(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (Stripe stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long count = stripe.counts.get(i);
+                counts[i] += count;
+                total += count;
+            }
+        }
+        if (total == 0) return 0;
+        long max = maxNanos();
+        long rank = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBound(i), max) / 1000;
+        }
+        return max / 1000;
+    }
+
+    // Returns the largest sample of any stripe in nanoseconds.
+    private long maxNanos() {
+        long max = 0;
+        for (Stripe stripe : stripes) max = Math.max(max, stripe.max.get());
+        return max;
+    }
+
+    // Returns a one-line summary of the count and the usual percentiles.
+    public String summary() {
+        return "count " + count() + ", p50 " + percentileMicros(0.50) + " us, p90 " + percentileMicros(0.90)
+                + " us, p99 " + percentileMicros(0.99) + " us, p99.9 " + percentileMicros(0.999)
+                + " us, max " + maxMicros() + " us";
+    }
+
+    // Maps a value to its bucket: exact below 16, then 16 linear sub-buckets per power of two.
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    // Returns the largest value that maps to the bucket.
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /** The bucket counts and largest sample of the threads that map to one stripe. */
+    private static final class Stripe {
+        final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        final AtomicLong max = new AtomicLong();
+    }
+}
@@ -0,0 +1,121 @@
+package model;
+
+/** Precomputed attack tables and sliding-piece ray lookups for bitboard move generation. */
+public final class Attacks {
+    private static final int NORTH = 0;
+    private static final int NORTH_EAST = 1;
+    private static final int EAST = 2;
+    private static final int SOUTH_EAST = 3;
+    private static final int SOUTH = 4;
+    private static final int SOUTH_WEST = 5;
+    private static final int WEST = 6;
+    private static final int NORTH_WEST = 7;
+
+    private static final int[] RANK_STEP = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] FILE_STEP = {0, 1, 1, 1, 0, -1, -1, -1};
+
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+    private static final long[][] RAYS = new long[8][64];
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        int[][] knightSteps = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+        for (int sq = 0; sq < 64; sq++) {
+            int rank = sq >>> 3;
+            int file = sq & 7;
+            for (int[] step : knightSteps) {
+                KNIGHT[sq] |= bit(rank + step[0], file + step[1]);
+            }
+            for (int dir = 0; dir < 8; dir++) {
+                KING[sq] |= bit(rank + RANK_STEP[dir], file + FILE_STEP[dir]);
+                for (int r = rank + RANK_STEP[dir], f = file + FILE_STEP[dir];
+                     r >= 0 && r < 8 && f >= 0 && f < 8;
+                     r += RANK_STEP[dir], f += FILE_STEP[dir]) {
+                    RAYS[dir][sq] |= 1L << (r * 8 + f);
+                }
+            }
+            PAWN[Position.WHITE][sq] = bit(rank + 1, file - 1) | bit(rank + 1, file + 1);
+            PAWN[Position.BLACK][sq] = bit(rank - 1, file - 1) | bit(rank - 1, file + 1);
+        }
+
+        for (int from = 0; from < 64; from++) {
+            for (int dir = 0; dir < 8; dir++) {
+                long ray = RAYS[dir][from];
+                for (long targets = ray; targets != 0; targets &= targets - 1) {
+                    int to = Long.numberOfTrailingZeros(targets);
+                    BETWEEN[from][to] = ray & ~RAYS[dir][to] & ~(1L << to);
+                    LINE[from][to] = ray | RAYS[(dir + 4) & 7][from] | (1L << from);
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    // Returns the squares attacked by a knight on the square.
+    public static long knight(int sq) {
+        return KNIGHT[sq];
+    }
+
+    // Returns the squares attacked by a king on the square.
+    public static long king(int sq) {
+        return KING[sq];
+    }
+
+    // Returns the squares attacked by a pawn of the given color on the square.
+    public static long pawn(int color, int sq) {
+        return PAWN[color][sq];
+    }
+
+    // Returns the squares attacked by a bishop on the square given the board occupancy.
+    public static long bishop(int sq, long occupied) {
+        return positiveRay(NORTH_EAST, sq, occupied) | positiveRay(NORTH_WEST, sq, occupied)
+                | negativeRay(SOUTH_EAST, sq, occupied) | negativeRay(SOUTH_WEST, sq, occupied);
+    }
+
+    // Returns the squares attacked by a rook on the square given the board occupancy.
+    public static long rook(int sq, long occupied) {
+        return positiveRay(NORTH, sq, occupied) | positiveRay(EAST, sq, occupied)
+                | negativeRay(SOUTH, sq, occupied) | negativeRay(WEST, sq, occupied);
+    }
+
+    // Returns the squares attacked by a queen on the square given the board occupancy.
+    public static long queen(int sq, long occupied) {
+        return bishop(sq, occupied) | rook(sq, occupied);
+    }
+
+    // Returns the squares strictly between two aligned squares, or zero if they are not aligned.
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    // Returns the full line through two aligned squares, or zero if they are not aligned.
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    // Follows a ray towards higher square indexes, stopping at the first blocker.
+    private static long positiveRay(int dir, int sq, long occupied) {
+        long ray = RAYS[dir][sq];
+        long blockers = ray & occupied;
+        if (blockers == 0) return ray;
+        return ray ^ RAYS[dir][Long.numberOfTrailingZeros(blockers)];
+    }
+
+    // Follows a ray towards lower square indexes, stopping at the first blocker.
+    private static long negativeRay(int dir, int sq, long occupied) {
+        long ray = RAYS[dir][sq];
+        long blockers = ray & occupied;
+        if (blockers == 0) return ray;
+        return ray ^ RAYS[dir][63 - Long.numberOfLeadingZeros(blockers)];
+    }
+
+    // Returns the bit of a rank and file, or zero when off the board.
+    private static long bit(int rank, int file) {
+        return rank >= 0 && rank < 8 && file >= 0 && file < 8 ? 1L << (rank * 8 + file) : 0L;
+    }
+}
@@ -1,18 +1,42 @@
 package model;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /** Represents the chessboard and handles piece placement and movement. */
-public class Board {
+public final class Board {
     private final Piece[][] grid;
-    private final Map<String, Piece> positionMap;
+    private String sideToMove = "white";
+    private int enPassantSquare = Position.NO_SQUARE;
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+    private int castlingRights;
+    private long zobristKey;
+    private int version;
 
     // Initializes the board and places all pieces in their starting positions.
     public Board() {
+        this(true);
+    }
+
+    // Initializes an empty board, optionally placing all pieces in their starting positions.
+    private Board(boolean populate) {
         grid = new Piece[8][8];
-        positionMap = new HashMap<>();
-        initializeBoard();
+        if (populate) initializeBoard();
+    }
+
+    // Creates a board with no pieces on it.
+    public static Board empty() {
+        return new Board(false);
+    }
+
+    // Creates a board from a FEN description, including side to move, castling, en passant and clocks.
+    public static Board fromFen(CharSequence fen) {
+        return Fen.toBoard(fen);
+    }
+
+    // Returns the FEN description of the board.
+    public String toFen() {
+        StringBuilder out = new StringBuilder(90);
+        Fen.write(this, out);
+        return out.toString();
     }
 
     // Sets up the initial arrangement of pieces on the board.
@@ -20,16 +44,11 @@ public class Board {
         String[] order = {"rook", "knight", "bishop", "queen", "king", "bishop", "knight", "rook"};
 
         for (int col = 0; col < 8; col++) {
-            grid[0][col] = createPiece("black", order[col]);
-            grid[1][col] = new Pawn("black");
+            setPiece(0, col, createPiece("black", order[col]));
+            setPiece(1, col, new Pawn("black"));
 
-            grid[6][col] = new Pawn("white");
-            grid[7][col] = createPiece("white", order[col]);
-
-            positionMap.put(toChessNotation(0, col), grid[0][col]);
-            positionMap.put(toChessNotation(1, col), grid[1][col]);
-            positionMap.put(toChessNotation(6, col), grid[6][col]);
-            positionMap.put(toChessNotation(7, col), grid[7][col]);
+            setPiece(6, col, new Pawn("white"));
+            setPiece(7, col, createPiece("white", order[col]));
         }
     }
 
@@ -50,32 +69,146 @@ public class Board {
         return grid[row][col];
     }
 
-    // Returns the piece at the specified board position.
+    // Returns the piece at the specified board position, or null if the position is invalid.
     public Piece getPiece(String pos) {
-        return positionMap.get(pos);
+        int sq = Position.square(pos);
+        return sq == Position.NO_SQUARE ? null : grid[Position.row(sq)][Position.col(sq)];
     }
 
-    // Places the given piece at the specified row and column.
+    // Places the given piece at the specified row and column, updating the Zobrist key incrementally.
     public void setPiece(int row, int col, Piece piece) {
+        int sq = Position.square(row, col);
+        Piece old = grid[row][col];
+        if (old != null) zobristKey ^= Zobrist.piece(old, sq);
+        if (piece != null) zobristKey ^= Zobrist.piece(piece, sq);
         grid[row][col] = piece;
-        positionMap.put(toChessNotation(row, col), piece);
+        if ((row == 0 || row == 7) && (col == 0 || col == 4 || col == 7)) updateCastlingRights();
+        version++;
     }
 
-    // Moves a piece from one position to another.
+    // Moves a piece from one position to another, relocating the rook when castling and removing a pawn taken en passant.
     public void movePiece(String from, String to) {
-        Piece piece = positionMap.get(from);
+        int fromSq = Position.square(from);
+        int toSq = Position.square(to);
+        if (fromSq == Position.NO_SQUARE || toSq == Position.NO_SQUARE) return;
+
+        int fromRow = Position.row(fromSq);
+        int fromCol = Position.col(fromSq);
+        int toRow = Position.row(toSq);
+        int toCol = Position.col(toSq);
+
+        Piece piece = grid[fromRow][fromCol];
         if (piece == null) return;
 
-        int[] fromRC = fromChessNotation(from);
-        int[] toRC = fromChessNotation(to);
+        if (piece instanceof Pawn && toSq == enPassantSquare && grid[toRow][toCol] == null) {
+            Piece victim = grid[fromRow][toCol];
+            if (victim instanceof Pawn && !victim.getColor().equals(piece.getColor())) {
+                zobristKey ^= Zobrist.piece(victim, Position.square(fromRow, toCol));
+                grid[fromRow][toCol] = null;
+            }
+        }
+        if (piece instanceof King && fromRow == toRow && Math.abs(fromCol - toCol) == 2) {
+            int rookCol = toCol > fromCol ? 7 : 0;
+            Piece rook = grid[fromRow][rookCol];
+            if (rook instanceof Rook) {
+                int rookTo = (fromCol + toCol) / 2;
+                zobristKey ^= Zobrist.piece(rook, Position.square(fromRow, rookCol))
+                        ^ Zobrist.piece(rook, Position.square(fromRow, rookTo));
+                grid[fromRow][rookTo] = rook;
+                grid[fromRow][rookCol] = null;
+                rook.setMoved(true);
+            }
+        }
 
-        grid[toRC[0]][toRC[1]] = piece;
-        grid[fromRC[0]][fromRC[1]] = null;
+        Piece captured = grid[toRow][toCol];
+        if (captured != null) zobristKey ^= Zobrist.piece(captured, toSq);
+        zobristKey ^= Zobrist.piece(piece, fromSq) ^ Zobrist.piece(piece, toSq);
+        grid[toRow][toCol] = piece;
+        grid[fromRow][fromCol] = null;
 
-        positionMap.remove(from);
-        positionMap.put(to, piece);
+        halfmoveClock = piece instanceof Pawn || captured != null ? 0 : halfmoveClock + 1;
+        if (piece.getColor().equals("black")) fullmoveNumber++;
+        setSideToMove(piece.getColor().equals("white") ? "black" : "white");
+
+        boolean doublePush = piece instanceof Pawn && Math.abs(fromRow - toRow) == 2;
+        setEnPassantSquare(doublePush ? (fromSq + toSq) / 2 : Position.NO_SQUARE);
 
         piece.setMoved(true);
+        updateCastlingRights();
+        version++;
+    }
+
+    // Re-derives castling rights from the unmoved kings and rooks and folds any change into the Zobrist key.
+    private void updateCastlingRights() {
+        int rights = Position.castlingRightsOf(this);
+        zobristKey ^= Zobrist.castling(castlingRights) ^ Zobrist.castling(rights);
+        castlingRights = rights;
+    }
+
+    // Returns the castling rights bit mask implied by the unmoved kings and rooks.
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    // Returns the Zobrist key of the board, updated incrementally by every placement and move.
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    // Returns the piece a move from one position to another would capture, including a pawn taken en passant.
+    public Piece getCapturedPiece(String from, String to) {
+        Piece piece = getPiece(from);
+        Piece target = getPiece(to);
+        if (target != null || !(piece instanceof Pawn) || from.charAt(0) == to.charAt(0)) return target;
+        return getPiece("" + to.charAt(0) + from.charAt(1));
+    }
+
+    // Returns the color whose turn it is, following the last moved piece.
+    public String getSideToMove() {
+        return sideToMove;
+    }
+
+    // Sets the color whose turn it is.
+    public void setSideToMove(String sideToMove) {
+        if (!sideToMove.equals(this.sideToMove)) zobristKey ^= Zobrist.side();
+        this.sideToMove = sideToMove;
+    }
+
+    // Returns the square a pawn skipped with its last double step, or NO_SQUARE.
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    // Sets the square a pawn skipped with its last double step.
+    public void setEnPassantSquare(int enPassantSquare) {
+        zobristKey ^= Zobrist.enPassant(this.enPassantSquare) ^ Zobrist.enPassant(enPassantSquare);
+        this.enPassantSquare = enPassantSquare;
+        version++;
+    }
+
+    // Returns the number of moves since the last capture or pawn move.
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    // Sets the number of moves since the last capture or pawn move.
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    // Returns the number of the current full move.
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    // Sets the number of the current full move.
+    public void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    // Returns a counter that changes whenever a piece is placed or moved.
+    public int getVersion() {
+        return version;
     }
 
     // Converts row and column indexes to chess notation.
@@ -0,0 +1,234 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/** Reads and writes positions in Forsyth-Edwards Notation straight from character data, without splitting or copying. */
+public final class Fen {
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final String PIECE_CHARS = "PNBRQKpnbrqk";
+
+    private Fen() {
+    }
+
+    // Replaces the position with the one described by the FEN text; the clock fields are optional.
+    public static void load(CharSequence fen, Position pos) {
+        pos.clear();
+        int length = fen.length();
+        int i = 0;
+
+        int rank = 7;
+        int file = 0;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (file != 8 || rank == 0) throw invalid(fen, "bad rank separator");
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+                if (file > 8) throw invalid(fen, "rank too long");
+            } else {
+                int piece = PIECE_CHARS.indexOf(c);
+                if (piece < 0 || file > 7) throw invalid(fen, "bad piece placement");
+                pos.put(rank * 8 + file, piece);
+                file++;
+            }
+        }
+        if (rank != 0 || file != 8) throw invalid(fen, "incomplete piece placement");
+
+        i = skipSpace(fen, i);
+        if (i >= length) throw invalid(fen, "missing side to move");
+        char side = fen.charAt(i++);
+        if (side == 'w') {
+            pos.setSideToMove(Position.WHITE);
+        } else if (side == 'b') {
+            pos.setSideToMove(Position.BLACK);
+        } else {
+            throw invalid(fen, "bad side to move");
+        }
+
+        i = skipSpace(fen, i);
+        int rights = 0;
+        if (i < length && fen.charAt(i) == '-') {
+            i++;
+        } else {
+            for (; i < length && fen.charAt(i) != ' '; i++) {
+                rights |= switch (fen.charAt(i)) {
+                    case 'K' -> Position.WHITE_KINGSIDE;
+                    case 'Q' -> Position.WHITE_QUEENSIDE;
+                    case 'k' -> Position.BLACK_KINGSIDE;
+                    case 'q' -> Position.BLACK_QUEENSIDE;
+                    default -> throw invalid(fen, "bad castling rights");
+                };
+            }
+        }
+        pos.setCastlingRights(rights);
+
+        i = skipSpace(fen, i);
+        if (i < length && fen.charAt(i) != '-') {
+            if (i + 1 >= length) throw invalid(fen, "bad en-passant square");
+            int epFile = fen.charAt(i) - 'a';
+            int epRank = fen.charAt(i + 1) - '1';
+            if (epFile < 0 || epFile > 7 || (epRank != 2 && epRank != 5)) throw invalid(fen, "bad en-passant square");
+            pos.setEnPassantSquare(epRank * 8 + epFile);
+            i += 2;
+        } else if (i < length) {
+            i++;
+        }
+
+        i = skipSpace(fen, i);
+        if (i < length) {
+            int start = i;
+            int halfmove = 0;
+            for (; i < length && fen.charAt(i) != ' '; i++) halfmove = halfmove * 10 + digit(fen, i);
+            if (i == start) throw invalid(fen, "bad halfmove clock");
+            pos.setHalfmoveClock(halfmove);
+
+            i = skipSpace(fen, i);
+            if (i < length) {
+                int fullmove = 0;
+                for (; i < length && fen.charAt(i) != ' '; i++) fullmove = fullmove * 10 + digit(fen, i);
+                pos.setFullmoveNumber(Math.max(1, fullmove));
+            }
+        }
+
+        pos.refreshAttacks();
+    }
+
+    // Reads one FEN line from the buffer's position into the position, leaving the buffer just past the line.
+    public static void load(ByteBuffer buffer, Position pos) {
+        int start = buffer.position();
+        int end = start;
+        while (end < buffer.limit() && buffer.get(end) != '\n' && buffer.get(end) != '\r') end++;
+
+        load(new AsciiView(buffer, start, end - start), pos);
+
+        while (end < buffer.limit() && (buffer.get(end) == '\n' || buffer.get(end) == '\r')) end++;
+        buffer.position(end);
+    }
+
+    // Creates a board holding the position described by the FEN text.
+    public static Board toBoard(CharSequence fen) {
+        Position pos = new Position();
+        load(fen, pos);
+        return pos.toBoard();
+    }
+
+    // Appends the FEN description of the position to the builder.
+    public static void write(Position pos, StringBuilder out) {
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int piece = pos.pieceAt(rank * 8 + file);
+                if (piece == Position.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) out.append((char) ('0' + empty));
+                empty = 0;
+                out.append(PIECE_CHARS.charAt(piece));
+            }
+            if (empty > 0) out.append((char) ('0' + empty));
+            if (rank > 0) out.append('/');
+        }
+        appendState(out, pos.getSideToMove(), pos.getCastlingRights(), pos.getEnPassantSquare(),
+                pos.getHalfmoveClock(), pos.getFullmoveNumber());
+    }
+
+    // Appends the FEN description of the board to the builder, deriving castling rights from moved flags.
+    public static void write(Board board, StringBuilder out) {
+        for (int row = 0; row < 8; row++) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                Piece piece = board.getPiece(row, col);
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) out.append((char) ('0' + empty));
+                empty = 0;
+                int index = Position.pieceIndex(Position.colorIndex(piece.getColor()), Position.typeIndex(piece));
+                out.append(PIECE_CHARS.charAt(index));
+            }
+            if (empty > 0) out.append((char) ('0' + empty));
+            if (row < 7) out.append('/');
+        }
+
+        int side = Position.colorIndex(board.getSideToMove());
+        int ep = board.getEnPassantSquare();
+        if (ep != Position.NO_SQUARE && (ep >>> 3) != (side == Position.WHITE ? 5 : 2)) ep = Position.NO_SQUARE;
+        appendState(out, side, board.getCastlingRights(), ep,
+                board.getHalfmoveClock(), board.getFullmoveNumber());
+    }
+
+    // Appends the side to move, castling, en-passant and clock fields.
+    private static void appendState(StringBuilder out, int side, int rights, int ep, int halfmove, int fullmove) {
+        out.append(' ').append(side == Position.WHITE ? 'w' : 'b').append(' ');
+        if (rights == 0) out.append('-');
+        if ((rights & Position.WHITE_KINGSIDE) != 0) out.append('K');
+        if ((rights & Position.WHITE_QUEENSIDE) != 0) out.append('Q');
+        if ((rights & Position.BLACK_KINGSIDE) != 0) out.append('k');
+        if ((rights & Position.BLACK_QUEENSIDE) != 0) out.append('q');
+        out.append(' ');
+        if (ep == Position.NO_SQUARE) {
+            out.append('-');
+        } else {
+            out.append((char) ('a' + (ep & 7))).append((char) ('1' + (ep >>> 3)));
+        }
+        out.append(' ').append(halfmove).append(' ').append(fullmove);
+    }
+
+    // Returns the value of the decimal digit at the index.
+    private static int digit(CharSequence fen, int i) {
+        char c = fen.charAt(i);
+        if (c < '0' || c > '9') throw invalid(fen, "bad clock value");
+        return c - '0';
+    }
+
+    // Returns the index of the next non-space character.
+    private static int skipSpace(CharSequence fen, int i) {
+        while (i < fen.length() && fen.charAt(i) == ' ') i++;
+        return i;
+    }
+
+    // Creates the exception thrown for malformed FEN text.
+    private static IllegalArgumentException invalid(CharSequence fen, String reason) {
+        return new IllegalArgumentException("Invalid FEN (" + reason + "): " + fen);
+    }
+
+    /** Exposes a range of ASCII bytes as characters without copying them. */
+    private static final class AsciiView implements CharSequence {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int length;
+
+        AsciiView(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiView(buffer, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(length);
+            for (int i = 0; i < length; i++) text.append(charAt(i));
+            return text.toString();
+        }
+    }
+}
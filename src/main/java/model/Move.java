@@ -2,6 +2,20 @@ package model;
 
 /** Represents a move in the chess game, including source, destination, and involved pieces. */
 public class Move {
+    // Encoded moves pack the source square in bits 0-5, the target in bits 6-11 and a flag in bits 12-15.
+    public static final int NONE = 0;
+
+    public static final int QUIET = 0;
+    public static final int DOUBLE_PUSH = 1;
+    public static final int KING_CASTLE = 2;
+    public static final int QUEEN_CASTLE = 3;
+    public static final int CAPTURE = 4;
+    public static final int EN_PASSANT = 5;
+    public static final int PROMOTION = 8;
+    public static final int PROMOTION_CAPTURE = 12;
+
+    private static final char[] PROMOTION_CHARS = {'n', 'b', 'r', 'q'};
+
     private final String from;
     private final String to;
     private final Piece movedPiece;
@@ -41,4 +55,56 @@ public class Move {
         String captureText = capturedPiece != null ? " captures " + capturedPiece.getType() : "";
         return movedPiece.getType() + " from " + from + " to " + to + captureText;
     }
+
+    // Packs a source square, target square and flag into an int move.
+    public static int encode(int from, int to, int flag) {
+        return from | (to << 6) | (flag << 12);
+    }
+
+    // Returns the source square of an encoded move.
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    // Returns the target square of an encoded move.
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    // Returns the flag of an encoded move.
+    public static int flag(int move) {
+        return move >>> 12;
+    }
+
+    // Checks whether an encoded move captures a piece, including en passant.
+    public static boolean isCapture(int move) {
+        return (flag(move) & CAPTURE) != 0;
+    }
+
+    // Checks whether an encoded move promotes a pawn.
+    public static boolean isPromotion(int move) {
+        return (flag(move) & PROMOTION) != 0;
+    }
+
+    // Checks whether an encoded move is a castling king move.
+    public static boolean isCastle(int move) {
+        int flag = flag(move);
+        return flag == KING_CASTLE || flag == QUEEN_CASTLE;
+    }
+
+    // Returns the piece type a pawn promotes to, from knight to queen.
+    public static int promotionType(int move) {
+        return Position.KNIGHT + (flag(move) & 3);
+    }
+
+    // Returns the letter of the piece a pawn promotes to, from 'n' to 'q'.
+    public static char promotionLetter(int move) {
+        return PROMOTION_CHARS[flag(move) & 3];
+    }
+
+    // Returns the coordinate notation of an encoded move, such as "e2e4" or "e7e8q".
+    public static String toNotation(int move) {
+        String text = Position.squareName(from(move)) + Position.squareName(to(move));
+        return isPromotion(move) ? text + promotionLetter(move) : text;
+    }
 }
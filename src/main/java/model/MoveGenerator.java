@@ -0,0 +1,205 @@
+package model;
+
+/** Generates pseudo-legal and legal encoded moves into caller-supplied buffers without allocating. */
+public final class MoveGenerator {
+    public static final int MAX_MOVES = 256;
+
+    private static final long ALL_SQUARES = -1L;
+    private static final long RANK_1 = 0xFFL;
+    private static final long RANK_3 = 0xFFL << 16;
+    private static final long RANK_6 = 0xFFL << 40;
+    private static final long RANK_8 = 0xFFL << 56;
+
+    private MoveGenerator() {
+    }
+
+    // Writes every pseudo-legal move for the side to move into the buffer and returns the count.
+    public static int generatePseudoLegal(Position pos, int[] moves) {
+        return generate(pos, moves, ALL_SQUARES, false);
+    }
+
+    // Writes every legal move for the side to move into the buffer and returns the count.
+    public static int generateLegal(Position pos, int[] moves) {
+        return generate(pos, moves, ALL_SQUARES, true);
+    }
+
+    // Writes the legal moves of the piece on the given square into the buffer and returns the count.
+    public static int generateLegalFrom(Position pos, int from, int[] moves) {
+        return generate(pos, moves, 1L << from, true);
+    }
+
+    // Writes the moves of the side to move whose source lies in the mask, optionally filtering out illegal ones.
+    public static int generate(Position pos, int[] moves, long fromMask, boolean legalOnly) {
+        int us = pos.getSideToMove();
+        int them = 1 - us;
+        long own = pos.occupancy(us);
+        long enemy = pos.occupancy(them);
+        long occupied = pos.occupied();
+        int count = 0;
+
+        count = addPawnMoves(pos, moves, count, pos.pieces(us, Position.PAWN) & fromMask, us, enemy, occupied);
+
+        for (long bb = pos.pieces(us, Position.KNIGHT) & fromMask; bb != 0; bb &= bb - 1) {
+            int from = Long.numberOfTrailingZeros(bb);
+            count = addTargets(moves, count, from, Attacks.knight(from) & ~own, enemy);
+        }
+        for (long bb = pos.pieces(us, Position.BISHOP) & fromMask; bb != 0; bb &= bb - 1) {
+            int from = Long.numberOfTrailingZeros(bb);
+            count = addTargets(moves, count, from, Attacks.bishop(from, occupied) & ~own, enemy);
+        }
+        for (long bb = pos.pieces(us, Position.ROOK) & fromMask; bb != 0; bb &= bb - 1) {
+            int from = Long.numberOfTrailingZeros(bb);
+            count = addTargets(moves, count, from, Attacks.rook(from, occupied) & ~own, enemy);
+        }
+        for (long bb = pos.pieces(us, Position.QUEEN) & fromMask; bb != 0; bb &= bb - 1) {
+            int from = Long.numberOfTrailingZeros(bb);
+            count = addTargets(moves, count, from, Attacks.queen(from, occupied) & ~own, enemy);
+        }
+        for (long bb = pos.pieces(us, Position.KING) & fromMask; bb != 0; bb &= bb - 1) {
+            int from = Long.numberOfTrailingZeros(bb);
+            count = addTargets(moves, count, from, Attacks.king(from) & ~own, enemy);
+            count = addCastling(pos, moves, count, from, us, occupied);
+        }
+
+        if (!legalOnly) return count;
+
+        int king = pos.kingSquare(us);
+        if (king == Position.NO_SQUARE) return count;
+
+        long checkers = pos.checkers(us);
+        long pinned = pos.pinned(us);
+        long evasionTargets = -1L;
+        if (checkers != 0) {
+            // Double check leaves only king moves; a single check may also be captured or blocked.
+            evasionTargets = (checkers & (checkers - 1)) != 0 ? 0L
+                    : checkers | Attacks.between(king, Long.numberOfTrailingZeros(checkers));
+        }
+
+        int legal = 0;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (isLegal(pos, move, king, checkers, pinned, evasionTargets)) moves[legal++] = move;
+        }
+        return legal;
+    }
+
+    // Decides legality from the attack maps, pins and checkers, falling back to an occupancy test only for en passant and king moves in check.
+    private static boolean isLegal(Position pos, int move, int king, long checkers, long pinned, long evasionTargets) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+
+        if (from == king) {
+            if (Move.isCastle(move)) return true;
+            if (pos.isAttacked(to, 1 - pos.getSideToMove())) return false;
+            return checkers == 0 || isLegal(pos, move);
+        }
+        if (Move.flag(move) == Move.EN_PASSANT) return isLegal(pos, move);
+        if ((evasionTargets & (1L << to)) == 0) return false;
+        return (pinned & (1L << from)) == 0 || (Attacks.line(king, from) & (1L << to)) != 0;
+    }
+
+    // Checks whether a pseudo-legal move leaves the mover's king safe, without changing the position.
+    public static boolean isLegal(Position pos, int move) {
+        if (Move.isCastle(move)) return true;
+
+        int us = pos.getSideToMove();
+        int king = pos.kingSquare(us);
+        if (king == Position.NO_SQUARE) return true;
+
+        int from = Move.from(move);
+        int to = Move.to(move);
+        long captured = 1L << to;
+        long occupied = (pos.occupied() ^ (1L << from)) | captured;
+
+        if (Move.flag(move) == Move.EN_PASSANT) {
+            captured = 1L << (us == Position.WHITE ? to - 8 : to + 8);
+            occupied ^= captured;
+        }
+
+        int kingSquare = from == king ? to : king;
+        return (pos.attackersTo(kingSquare, 1 - us, occupied) & ~captured) == 0;
+    }
+
+    // Adds pushes, double pushes, captures, en passant and promotions for the given pawns.
+    private static int addPawnMoves(Position pos, int[] moves, int count, long pawns, int us, long enemy, long occupied) {
+        int forward = us == Position.WHITE ? 8 : -8;
+        long doublePushRank = us == Position.WHITE ? RANK_3 : RANK_6;
+        long promotionRank = us == Position.WHITE ? RANK_8 : RANK_1;
+        int ep = pos.getEnPassantSquare();
+
+        for (; pawns != 0; pawns &= pawns - 1) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            int to = from + forward;
+            long toBit = 1L << to;
+
+            if ((occupied & toBit) == 0) {
+                if ((toBit & promotionRank) != 0) {
+                    count = addPromotions(moves, count, from, to, Move.PROMOTION);
+                } else {
+                    moves[count++] = Move.encode(from, to, Move.QUIET);
+                    if ((toBit & doublePushRank) != 0 && (occupied & (1L << (to + forward))) == 0) {
+                        moves[count++] = Move.encode(from, to + forward, Move.DOUBLE_PUSH);
+                    }
+                }
+            }
+
+            long attacks = Attacks.pawn(us, from);
+            for (long captures = attacks & enemy; captures != 0; captures &= captures - 1) {
+                int target = Long.numberOfTrailingZeros(captures);
+                if (((1L << target) & promotionRank) != 0) {
+                    count = addPromotions(moves, count, from, target, Move.PROMOTION_CAPTURE);
+                } else {
+                    moves[count++] = Move.encode(from, target, Move.CAPTURE);
+                }
+            }
+
+            if (ep != Position.NO_SQUARE && (attacks & (1L << ep)) != 0) {
+                moves[count++] = Move.encode(from, ep, Move.EN_PASSANT);
+            }
+        }
+        return count;
+    }
+
+    // Adds one move per promotion piece, from knight to queen.
+    private static int addPromotions(int[] moves, int count, int from, int to, int baseFlag) {
+        for (int piece = 0; piece < 4; piece++) {
+            moves[count++] = Move.encode(from, to, baseFlag | piece);
+        }
+        return count;
+    }
+
+    // Adds a quiet move or capture for every target square.
+    private static int addTargets(int[] moves, int count, int from, long targets, long enemy) {
+        for (; targets != 0; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            moves[count++] = Move.encode(from, to, (enemy & (1L << to)) != 0 ? Move.CAPTURE : Move.QUIET);
+        }
+        return count;
+    }
+
+    // Adds castling moves when the rights remain, the path is empty and the king never crosses an attacked square.
+    private static int addCastling(Position pos, int[] moves, int count, int king, int us, long occupied) {
+        int homeRank = us == Position.WHITE ? 0 : 56;
+        if (king != homeRank + 4) return count;
+
+        int rights = pos.getCastlingRights();
+        int kingside = us == Position.WHITE ? Position.WHITE_KINGSIDE : Position.BLACK_KINGSIDE;
+        int queenside = us == Position.WHITE ? Position.WHITE_QUEENSIDE : Position.BLACK_QUEENSIDE;
+        int rook = Position.pieceIndex(us, Position.ROOK);
+        int them = 1 - us;
+
+        if ((rights & (kingside | queenside)) == 0 || pos.isAttacked(king, them)) return count;
+
+        if ((rights & kingside) != 0 && pos.pieceAt(homeRank + 7) == rook
+                && (occupied & (0x60L << homeRank)) == 0
+                && !pos.isAttacked(homeRank + 5, them) && !pos.isAttacked(homeRank + 6, them)) {
+            moves[count++] = Move.encode(king, homeRank + 6, Move.KING_CASTLE);
+        }
+        if ((rights & queenside) != 0 && pos.pieceAt(homeRank) == rook
+                && (occupied & (0x0EL << homeRank)) == 0
+                && !pos.isAttacked(homeRank + 3, them) && !pos.isAttacked(homeRank + 2, them)) {
+            moves[count++] = Move.encode(king, homeRank + 2, Move.QUEEN_CASTLE);
+        }
+        return count;
+    }
+}
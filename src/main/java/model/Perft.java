@@ -0,0 +1,247 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Counts move paths to a fixed depth to verify move generation and measure its throughput. */
+public class Perft {
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    // Reference positions with published node counts: name, FEN, depth, expected nodes.
+    private static final String[][] SUITE = {
+            {"startpos", Fen.START, "5", "4865609"},
+            {"kiwipete", KIWIPETE, "4", "4085603"},
+            {"position3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", "5", "674624"},
+            {"position4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", "4", "422333"},
+            {"position5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", "4", "2103487"},
+            {"position6", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", "4", "3894594"},
+    };
+
+    private final Position position = new Position();
+    private final int[][] moves;
+
+    // Creates a counter with move buffers preallocated for the given maximum depth.
+    public Perft(int maxDepth) {
+        moves = new int[Math.max(1, maxDepth) + 1][MoveGenerator.MAX_MOVES];
+    }
+
+    // Counts the leaf nodes reachable from the position in exactly the given number of plies.
+    public long count(Position start, int depth) {
+        position.copyFrom(start);
+        return perft(depth);
+    }
+
+    // Walks the tree with make/unmake, counting the last ply from the legal move count alone.
+    private long perft(int depth) {
+        if (depth == 0) return 1;
+        int[] buffer = moves[depth];
+        int count = MoveGenerator.generateLegal(position, buffer);
+        if (depth == 1) return count;
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            position.makeMove(buffer[i]);
+            nodes += perft(depth - 1);
+            position.unmakeMove();
+        }
+        return nodes;
+    }
+
+    // Counts the nodes below each root move, sharing the root moves among worker threads.
+    public static long[] divide(Position start, int depth, int[] rootMoves, int rootCount, int threads) {
+        long[] counts = new long[rootCount];
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            Perft perft = new Perft(depth);
+            Position pos = new Position();
+            pos.copyFrom(start);
+            int index;
+            while ((index = next.getAndIncrement()) < rootCount) {
+                pos.makeMove(rootMoves[index]);
+                counts[index] = perft.count(pos, depth - 1);
+                pos.unmakeMove();
+            }
+        };
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 1; t < Math.min(threads, rootCount); t++) {
+            Thread thread = new Thread(worker, "perft-" + t);
+            thread.start();
+            workers.add(thread);
+        }
+        worker.run();
+        for (Thread thread : workers) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for perft workers", e);
+            }
+        }
+        return counts;
+    }
+
+    // Counts the nodes of the whole tree, splitting the root moves across the given number of threads.
+    public static long run(Position start, int depth, int threads) {
+        if (depth <= 1 || threads <= 1) return new Perft(depth).count(start, depth);
+
+        int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+        int rootCount = MoveGenerator.generateLegal(start, rootMoves);
+        long total = 0;
+        for (long nodes : divide(start, depth, rootMoves, rootCount, threads)) total += nodes;
+        return total;
+    }
+
+    // Compares Piece.isValidMove with the generator's plain moves for the side to move and returns the mismatch count.
+    public static int crossCheckPieces(Position pos, int[] buffer) {
+        Board board = pos.toBoard();
+        long[] generated = new long[64];
+        int count = MoveGenerator.generatePseudoLegal(pos, buffer);
+        for (int i = 0; i < count; i++) {
+            int move = buffer[i];
+            if (!Move.isCastle(move) && Move.flag(move) != Move.EN_PASSANT) {
+                generated[Move.from(move)] |= 1L << Move.to(move);
+            }
+        }
+
+        int mismatches = 0;
+        for (long own = pos.occupancy(pos.getSideToMove()); own != 0; own &= own - 1) {
+            int from = Long.numberOfTrailingZeros(own);
+            Piece piece = board.getPiece(Position.row(from), Position.col(from));
+            for (int to = 0; to < 64; to++) {
+                boolean byPiece = piece.isValidMove(Position.row(from), Position.col(from),
+                        Position.row(to), Position.col(to), board);
+                boolean byGenerator = (generated[from] & (1L << to)) != 0;
+                if (byPiece != byGenerator) {
+                    mismatches++;
+                    System.out.println("[MISMATCH] " + piece.getColor() + " " + piece.getType() + " "
+                            + Position.squareName(from) + Position.squareName(to)
+                            + " piece=" + byPiece + " generator=" + byGenerator);
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    // Checks that the incremental Zobrist keys of the position and of its board equal a key computed from scratch.
+    public static int crossCheckZobrist(Position pos) {
+        long expected = Zobrist.keyOf(pos);
+        long boardKey = pos.toBoard().getZobristKey();
+        if (pos.getZobristKey() == expected && boardKey == expected) return 0;
+        StringBuilder fen = new StringBuilder();
+        Fen.write(pos, fen);
+        System.out.println("[MISMATCH] zobrist " + fen + " incremental=" + pos.getZobristKey()
+                + " board=" + boardKey + " expected=" + expected);
+        return 1;
+    }
+
+    // Runs the cross-checks on every node up to the given depth.
+    private static int crossCheckTree(Position pos, int depth, int[][] buffers) {
+        int mismatches = crossCheckPieces(pos, buffers[0]) + crossCheckZobrist(pos);
+        if (depth == 0) return mismatches;
+
+        int[] buffer = buffers[depth];
+        int count = MoveGenerator.generateLegal(pos, buffer);
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(buffer[i]);
+            mismatches += crossCheckTree(pos, depth - 1, buffers);
+            pos.unmakeMove();
+        }
+        return mismatches;
+    }
+
+    // Runs the reference suite and the cross-checks, returning whether everything matched.
+    private static boolean verify(int threads) {
+        boolean ok = true;
+        Position pos = new Position();
+        for (String[] entry : SUITE) {
+            Fen.load(entry[1], pos);
+            int depth = Integer.parseInt(entry[2]);
+            long expected = Long.parseLong(entry[3]);
+
+            long start = System.nanoTime();
+            long nodes = run(pos, depth, threads);
+            long elapsed = System.nanoTime() - start;
+            int mismatches = crossCheckTree(pos, 2, new int[3][MoveGenerator.MAX_MOVES]);
+
+            boolean passed = nodes == expected && mismatches == 0;
+            ok &= passed;
+            System.out.println((passed ? "[PASS] " : "[FAIL] ") + entry[0] + " depth " + depth + ": " + nodes
+                    + " nodes (expected " + expected + ", cross-check mismatches " + mismatches + ") "
+                    + formatRate(nodes, elapsed));
+        }
+        return ok;
+    }
+
+    // Formats elapsed time and nodes per second.
+    private static String formatRate(long nodes, long elapsedNanos) {
+        long millis = elapsedNanos / 1_000_000;
+        long nps = elapsedNanos == 0 ? 0 : nodes * 1_000_000_000L / elapsedNanos;
+        return "in " + millis + " ms (" + nps + " nodes/sec)";
+    }
+
+    // Resolves a named position or returns the argument as FEN.
+    private static String resolvePosition(String arg) {
+        if (arg.equalsIgnoreCase("startpos")) return Fen.START;
+        if (arg.equalsIgnoreCase("kiwipete")) return KIWIPETE;
+        for (String[] entry : SUITE) {
+            if (entry[0].equalsIgnoreCase(arg)) return entry[1];
+        }
+        return arg;
+    }
+
+    // Runs perft from the command line: [startpos|kiwipete|FEN] [depth] [--divide] [--threads N] [--verify].
+    public static void main(String[] args) {
+        String fen = Fen.START;
+        int depth = 5;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean divide = false;
+        boolean verify = false;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--divide")) {
+                divide = true;
+            } else if (arg.equals("--verify")) {
+                verify = true;
+            } else if (arg.equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (arg.matches("\\d{1,2}")) {
+                depth = Integer.parseInt(arg);
+            } else {
+                fen = resolvePosition(arg);
+            }
+        }
+
+        if (verify) {
+            boolean ok = verify(threads);
+            System.out.println(ok ? "All perft checks passed." : "Perft checks FAILED.");
+            if (!ok) System.exit(1);
+            return;
+        }
+
+        Position pos = new Position();
+        Fen.load(fen, pos);
+        System.out.println("Position: " + fen);
+        System.out.println("Threads: " + threads);
+
+        long start = System.nanoTime();
+        long nodes;
+        if (divide && depth > 0) {
+            int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+            int rootCount = MoveGenerator.generateLegal(pos, rootMoves);
+            long[] counts = divide(pos, depth, rootMoves, rootCount, threads);
+            nodes = 0;
+            for (int i = 0; i < rootCount; i++) {
+                System.out.println(Move.toNotation(rootMoves[i]) + ": " + counts[i]);
+                nodes += counts[i];
+            }
+            System.out.println("Moves: " + rootCount);
+        } else {
+            nodes = run(pos, depth, threads);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println("Depth " + depth + ": " + nodes + " nodes " + formatRate(nodes, elapsed));
+    }
+}
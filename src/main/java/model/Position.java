@@ -0,0 +1,633 @@
+package model;
+
+/** Represents a chess position as 64-bit bitboards for fast, allocation-free queries. */
+public final class Position {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    public static final int EMPTY = -1;
+    public static final int NO_SQUARE = -1;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    public static final int MAX_PLY = 1024;
+
+    private static final String[] TYPE_NAMES = {"pawn", "knight", "bishop", "rook", "queen", "king"};
+    private static final String[] SQUARE_NAMES = new String[64];
+
+    private static final int[] CASTLING_MASK = new int[64];
+    private static final long FILE_A = 0x0101010101010101L;
+    private static final long FILE_H = FILE_A << 7;
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            SQUARE_NAMES[sq] = Board.toChessNotation(row(sq), col(sq));
+            CASTLING_MASK[sq] = 15;
+        }
+        CASTLING_MASK[0] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[4] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[7] &= ~WHITE_KINGSIDE;
+        CASTLING_MASK[56] &= ~BLACK_QUEENSIDE;
+        CASTLING_MASK[60] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASK[63] &= ~BLACK_KINGSIDE;
+    }
+
+    // One bitboard per piece, indexed by color * 6 + type (a1 = bit 0, h8 = bit 63).
+    private final long[] pieces = new long[12];
+    private final long[] colorOccupancy = new long[2];
+    private long occupied;
+    private final int[] squares = new int[64];
+    private final int[] kingSquares = {NO_SQUARE, NO_SQUARE};
+
+    // Squares attacked by each piece index and by each color, kept up to date on every move.
+    private final long[] pieceAttacks = new long[12];
+    private final long[] attacks = new long[2];
+
+    private int sideToMove = WHITE;
+    private int castlingRights;
+    private int enPassantSquare = NO_SQUARE;
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+    private long zobristKey;
+
+    // Fixed-size undo stack, allocated once on the first move so query-only positions stay small.
+    private int[] undoMove;
+    private int[] undoCaptured;
+    private int[] undoCastlingRights;
+    private int[] undoEnPassantSquare;
+    private int[] undoHalfmoveClock;
+    private long[] undoZobristKey;
+    private long[] undoPieceAttacks;
+    private int ply;
+
+    // Creates an empty position with white to move.
+    public Position() {
+        clear();
+    }
+
+    // Creates a position mirroring the given board with the given side to move.
+    public Position(Board board, String sideToMove) {
+        load(board, sideToMove);
+    }
+
+    // Removes all pieces and resets the side to move, castling rights and clocks.
+    public void clear() {
+        for (int i = 0; i < 12; i++) {
+            pieces[i] = 0L;
+            pieceAttacks[i] = 0L;
+        }
+        colorOccupancy[WHITE] = 0L;
+        colorOccupancy[BLACK] = 0L;
+        attacks[WHITE] = 0L;
+        attacks[BLACK] = 0L;
+        occupied = 0L;
+        kingSquares[WHITE] = NO_SQUARE;
+        kingSquares[BLACK] = NO_SQUARE;
+        for (int sq = 0; sq < 64; sq++) squares[sq] = EMPTY;
+        sideToMove = WHITE;
+        castlingRights = 0;
+        enPassantSquare = NO_SQUARE;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        zobristKey = 0L;
+        ply = 0;
+    }
+
+    // Replaces this position with the pieces on the board, deriving castling rights from moved flags.
+    public void load(Board board, String sideToMove) {
+        clear();
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                Piece piece = board.getPiece(row, col);
+                if (piece != null) {
+                    put(square(row, col), pieceIndex(colorIndex(piece.getColor()), typeIndex(piece)));
+                }
+            }
+        }
+        refreshAttacks();
+        setSideToMove(colorIndex(sideToMove));
+        setCastlingRights(board.getCastlingRights());
+        this.halfmoveClock = board.getHalfmoveClock();
+        this.fullmoveNumber = board.getFullmoveNumber();
+
+        // Only keep the en-passant square if the side to move is the one that may capture on it.
+        int ep = board.getEnPassantSquare();
+        if (ep != NO_SQUARE && (ep >>> 3) == (this.sideToMove == WHITE ? 5 : 2)) {
+            setEnPassantSquare(ep);
+        }
+    }
+
+    // Copies another position into this one without allocating, starting from an empty undo stack.
+    public void copyFrom(Position other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, 12);
+        System.arraycopy(other.colorOccupancy, 0, colorOccupancy, 0, 2);
+        System.arraycopy(other.squares, 0, squares, 0, 64);
+        System.arraycopy(other.kingSquares, 0, kingSquares, 0, 2);
+        System.arraycopy(other.pieceAttacks, 0, pieceAttacks, 0, 12);
+        System.arraycopy(other.attacks, 0, attacks, 0, 2);
+        occupied = other.occupied;
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        zobristKey = other.zobristKey;
+        ply = 0;
+    }
+
+    // Builds a new board holding the same pieces and state, marking kings and rooks that lost castling rights as moved.
+    public Board toBoard() {
+        Board board = Board.empty();
+        for (int sq = 0; sq < 64; sq++) {
+            int p = squares[sq];
+            if (p == EMPTY) continue;
+            Piece piece = createPiece(p);
+            piece.setMoved(!isOnHomeSquare(p, sq));
+            board.setPiece(row(sq), col(sq), piece);
+        }
+        board.setSideToMove(colorName(sideToMove));
+        board.setEnPassantSquare(enPassantSquare);
+        board.setHalfmoveClock(halfmoveClock);
+        board.setFullmoveNumber(fullmoveNumber);
+        return board;
+    }
+
+    // Plays an encoded pseudo-legal move for the side to move, pushing what is needed to undo it.
+    public void makeMove(int move) {
+        if (undoMove == null) allocateUndoStack();
+        if (ply == MAX_PLY) throw new IllegalStateException("Undo stack is full");
+
+        int us = sideToMove;
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flag = Move.flag(move);
+
+        undoMove[ply] = move;
+        undoCastlingRights[ply] = castlingRights;
+        undoEnPassantSquare[ply] = enPassantSquare;
+        undoHalfmoveClock[ply] = halfmoveClock;
+        undoZobristKey[ply] = zobristKey;
+        System.arraycopy(pieceAttacks, 0, undoPieceAttacks, ply * 12, 12);
+
+        long changed = (1L << from) | (1L << to);
+        int dirty = 0;
+
+        int captured = EMPTY;
+        if (flag == Move.EN_PASSANT) {
+            int victim = us == WHITE ? to - 8 : to + 8;
+            captured = take(victim);
+            changed |= 1L << victim;
+        } else if (Move.isCapture(move)) {
+            captured = take(to);
+        }
+        undoCaptured[ply] = captured;
+        if (captured != EMPTY) dirty |= 1 << captured;
+
+        int piece = take(from);
+        int placed = Move.isPromotion(move) ? pieceIndex(us, Move.promotionType(move)) : piece;
+        put(to, placed);
+        dirty |= (1 << piece) | (1 << placed);
+
+        if (flag == Move.KING_CASTLE) {
+            put(from + 1, take(from + 3));
+            changed |= (1L << (from + 1)) | (1L << (from + 3));
+            dirty |= 1 << pieceIndex(us, ROOK);
+        } else if (flag == Move.QUEEN_CASTLE) {
+            put(from - 1, take(from - 4));
+            changed |= (1L << (from - 1)) | (1L << (from - 4));
+            dirty |= 1 << pieceIndex(us, ROOK);
+        }
+        updateAttacks(changed, dirty);
+
+        setCastlingRights(castlingRights & CASTLING_MASK[from] & CASTLING_MASK[to]);
+        setEnPassantSquare(flag == Move.DOUBLE_PUSH ? (from + to) >>> 1 : NO_SQUARE);
+        halfmoveClock = typeOf(piece) == PAWN || captured != EMPTY ? 0 : halfmoveClock + 1;
+        if (us == BLACK) fullmoveNumber++;
+        sideToMove = 1 - us;
+        zobristKey ^= Zobrist.side();
+        ply++;
+    }
+
+    // Takes back the most recently made move, restoring captures, rights and clocks from the undo stack.
+    public void unmakeMove() {
+        if (ply == 0) throw new IllegalStateException("No move to unmake");
+        ply--;
+
+        int move = undoMove[ply];
+        int us = 1 - sideToMove;
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flag = Move.flag(move);
+
+        int piece = take(to);
+        put(from, Move.isPromotion(move) ? pieceIndex(us, PAWN) : piece);
+
+        if (flag == Move.KING_CASTLE) {
+            put(from + 3, take(from + 1));
+        } else if (flag == Move.QUEEN_CASTLE) {
+            put(from - 4, take(from - 1));
+        }
+
+        int captured = undoCaptured[ply];
+        if (captured != EMPTY) {
+            put(flag == Move.EN_PASSANT ? (us == WHITE ? to - 8 : to + 8) : to, captured);
+        }
+
+        System.arraycopy(undoPieceAttacks, ply * 12, pieceAttacks, 0, 12);
+        combineAttacks();
+
+        castlingRights = undoCastlingRights[ply];
+        enPassantSquare = undoEnPassantSquare[ply];
+        halfmoveClock = undoHalfmoveClock[ply];
+        zobristKey = undoZobristKey[ply];
+        if (us == BLACK) fullmoveNumber--;
+        sideToMove = us;
+    }
+
+    // Allocates the undo stack at its full size so later moves never allocate.
+    private void allocateUndoStack() {
+        undoMove = new int[MAX_PLY];
+        undoCaptured = new int[MAX_PLY];
+        undoCastlingRights = new int[MAX_PLY];
+        undoEnPassantSquare = new int[MAX_PLY];
+        undoHalfmoveClock = new int[MAX_PLY];
+        undoZobristKey = new long[MAX_PLY];
+        undoPieceAttacks = new long[MAX_PLY * 12];
+    }
+
+    // Returns the number of moves currently on the undo stack.
+    public int getPly() {
+        return ply;
+    }
+
+    // Places a piece on an empty square and updates the attack maps.
+    public void placePiece(int sq, int piece) {
+        put(sq, piece);
+        updateAttacks(1L << sq, 1 << piece);
+    }
+
+    // Removes whatever piece stands on the square, updates the attack maps and returns it, or EMPTY.
+    public int removePiece(int sq) {
+        int piece = take(sq);
+        if (piece != EMPTY) updateAttacks(1L << sq, 1 << piece);
+        return piece;
+    }
+
+    // Sets the piece bits of an empty square without touching the attack maps.
+    void put(int sq, int piece) {
+        long bit = 1L << sq;
+        pieces[piece] |= bit;
+        colorOccupancy[colorOf(piece)] |= bit;
+        occupied |= bit;
+        squares[sq] = piece;
+        zobristKey ^= Zobrist.piece(piece, sq);
+        if (typeOf(piece) == KING) kingSquares[colorOf(piece)] = sq;
+    }
+
+    // Clears the piece bits of a square without touching the attack maps and returns the piece, or EMPTY.
+    private int take(int sq) {
+        int piece = squares[sq];
+        if (piece == EMPTY) return EMPTY;
+        long bit = ~(1L << sq);
+        pieces[piece] &= bit;
+        colorOccupancy[colorOf(piece)] &= bit;
+        occupied &= bit;
+        squares[sq] = EMPTY;
+        zobristKey ^= Zobrist.piece(piece, sq);
+        if (typeOf(piece) == KING) {
+            long king = pieces[piece];
+            kingSquares[colorOf(piece)] = king == 0L ? NO_SQUARE : Long.numberOfTrailingZeros(king);
+        }
+        return piece;
+    }
+
+    // Recomputes the attacks of dirty pieces and of sliders whose rays cross a changed square.
+    private void updateAttacks(long changedSquares, int dirtyPieces) {
+        for (int p = 0; p < 12; p++) {
+            int type = typeOf(p);
+            boolean slider = type == BISHOP || type == ROOK || type == QUEEN;
+            if ((dirtyPieces & (1 << p)) != 0 || (slider && (pieceAttacks[p] & changedSquares) != 0)) {
+                pieceAttacks[p] = computeAttacks(p);
+            }
+        }
+        combineAttacks();
+    }
+
+    // Recomputes every attack map from scratch.
+    void refreshAttacks() {
+        for (int p = 0; p < 12; p++) {
+            pieceAttacks[p] = computeAttacks(p);
+        }
+        combineAttacks();
+    }
+
+    // Unions the per-piece attack maps into the per-color maps.
+    private void combineAttacks() {
+        attacks[WHITE] = pieceAttacks[0] | pieceAttacks[1] | pieceAttacks[2]
+                | pieceAttacks[3] | pieceAttacks[4] | pieceAttacks[5];
+        attacks[BLACK] = pieceAttacks[6] | pieceAttacks[7] | pieceAttacks[8]
+                | pieceAttacks[9] | pieceAttacks[10] | pieceAttacks[11];
+    }
+
+    // Returns every square attacked by the pieces of the given index.
+    private long computeAttacks(int piece) {
+        long bb = pieces[piece];
+        if (typeOf(piece) == PAWN) {
+            return colorOf(piece) == WHITE
+                    ? ((bb << 7) & ~FILE_H) | ((bb << 9) & ~FILE_A)
+                    : ((bb >>> 9) & ~FILE_H) | ((bb >>> 7) & ~FILE_A);
+        }
+        long result = 0L;
+        for (; bb != 0; bb &= bb - 1) {
+            int sq = Long.numberOfTrailingZeros(bb);
+            result |= switch (typeOf(piece)) {
+                case KNIGHT -> Attacks.knight(sq);
+                case BISHOP -> Attacks.bishop(sq, occupied);
+                case ROOK -> Attacks.rook(sq, occupied);
+                case QUEEN -> Attacks.queen(sq, occupied);
+                default -> Attacks.king(sq);
+            };
+        }
+        return result;
+    }
+
+    // Returns the piece index on the square, or EMPTY.
+    public int pieceAt(int sq) {
+        return squares[sq];
+    }
+
+    // Returns the piece index at the given board row and column, or EMPTY.
+    public int pieceAt(int row, int col) {
+        return squares[square(row, col)];
+    }
+
+    // Returns the bitboard of the given color and piece type.
+    public long pieces(int color, int type) {
+        return pieces[pieceIndex(color, type)];
+    }
+
+    // Returns the bitboard of every piece of the given color.
+    public long occupancy(int color) {
+        return colorOccupancy[color];
+    }
+
+    // Returns the bitboard of every occupied square.
+    public long occupied() {
+        return occupied;
+    }
+
+    // Returns the cached square of the given color's king, or NO_SQUARE if it is missing.
+    public int kingSquare(int color) {
+        return kingSquares[color];
+    }
+
+    // Returns every square attacked by the given color.
+    public long attacks(int color) {
+        return attacks[color];
+    }
+
+    // Returns the pieces of the given color that attack the square, assuming the given occupancy.
+    public long attackersTo(int sq, int byColor, long occupied) {
+        long bishopsQueens = pieces(byColor, BISHOP) | pieces(byColor, QUEEN);
+        long rooksQueens = pieces(byColor, ROOK) | pieces(byColor, QUEEN);
+        return (Attacks.pawn(1 - byColor, sq) & pieces(byColor, PAWN))
+                | (Attacks.knight(sq) & pieces(byColor, KNIGHT))
+                | (Attacks.king(sq) & pieces(byColor, KING))
+                | (Attacks.bishop(sq, occupied) & bishopsQueens)
+                | (Attacks.rook(sq, occupied) & rooksQueens);
+    }
+
+    // Checks whether any piece of the given color attacks the square, using the attack maps.
+    public boolean isAttacked(int sq, int byColor) {
+        return (attacks[byColor] & (1L << sq)) != 0;
+    }
+
+    // Checks whether the king of the given color is attacked.
+    public boolean isInCheck(int color) {
+        int king = kingSquares[color];
+        return king != NO_SQUARE && (attacks[1 - color] & (1L << king)) != 0;
+    }
+
+    // Returns the enemy pieces giving check to the given color's king.
+    public long checkers(int color) {
+        int king = kingSquares[color];
+        if (king == NO_SQUARE || (attacks[1 - color] & (1L << king)) == 0) return 0L;
+        return attackersTo(king, 1 - color, occupied);
+    }
+
+    // Returns the pieces of the given color that are pinned to their king by an enemy slider.
+    public long pinned(int color) {
+        int king = kingSquares[color];
+        if (king == NO_SQUARE) return 0L;
+
+        int them = 1 - color;
+        long queens = pieces(them, QUEEN);
+        long snipers = (Attacks.rook(king, 0L) & (pieces(them, ROOK) | queens))
+                | (Attacks.bishop(king, 0L) & (pieces(them, BISHOP) | queens));
+        long result = 0L;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Attacks.between(king, Long.numberOfTrailingZeros(snipers)) & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0) {
+                result |= blockers & colorOccupancy[color];
+            }
+        }
+        return result;
+    }
+
+    // Returns the incrementally maintained Zobrist key of the position.
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    // Checks whether the current position already occurred on the undo stack since the last irreversible move.
+    public boolean isRepetition() {
+        int limit = Math.max(0, ply - halfmoveClock);
+        for (int i = ply - 2; i >= limit; i -= 2) {
+            if (undoZobristKey[i] == zobristKey) return true;
+        }
+        return false;
+    }
+
+    // Returns the color to move.
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    // Sets the color to move.
+    public void setSideToMove(int color) {
+        if (color != sideToMove) zobristKey ^= Zobrist.side();
+        this.sideToMove = color;
+    }
+
+    // Returns the castling rights as a bit mask.
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    // Sets the castling rights bit mask.
+    public void setCastlingRights(int castlingRights) {
+        zobristKey ^= Zobrist.castling(this.castlingRights) ^ Zobrist.castling(castlingRights);
+        this.castlingRights = castlingRights;
+    }
+
+    // Returns the en-passant target square, or NO_SQUARE.
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    // Sets the en-passant target square.
+    public void setEnPassantSquare(int enPassantSquare) {
+        zobristKey ^= Zobrist.enPassant(this.enPassantSquare) ^ Zobrist.enPassant(enPassantSquare);
+        this.enPassantSquare = enPassantSquare;
+    }
+
+    // Returns the number of halfmoves since the last capture or pawn move.
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    // Sets the halfmove clock.
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    // Returns the fullmove number.
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    // Sets the fullmove number.
+    public void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    // Converts a board row and column to a square index.
+    public static int square(int row, int col) {
+        return (7 - row) * 8 + col;
+    }
+
+    // Converts chess notation such as "e4" to a square index without allocating, or NO_SQUARE if invalid.
+    public static int square(CharSequence pos) {
+        if (pos == null || pos.length() != 2) return NO_SQUARE;
+        int file = pos.charAt(0) - 'a';
+        int rank = pos.charAt(1) - '1';
+        if (file < 0 || file > 7 || rank < 0 || rank > 7) return NO_SQUARE;
+        return rank * 8 + file;
+    }
+
+    // Returns the board row of a square index.
+    public static int row(int sq) {
+        return 7 - (sq >>> 3);
+    }
+
+    // Returns the board column of a square index.
+    public static int col(int sq) {
+        return sq & 7;
+    }
+
+    // Returns the cached chess notation of a square index.
+    public static String squareName(int sq) {
+        return SQUARE_NAMES[sq];
+    }
+
+    // Combines a color and piece type into a piece index.
+    public static int pieceIndex(int color, int type) {
+        return color * 6 + type;
+    }
+
+    // Returns the color of a piece index.
+    public static int colorOf(int piece) {
+        return piece / 6;
+    }
+
+    // Returns the type of a piece index.
+    public static int typeOf(int piece) {
+        return piece % 6;
+    }
+
+    // Converts a color name to its index.
+    public static int colorIndex(String color) {
+        return color.equals("white") ? WHITE : BLACK;
+    }
+
+    // Converts a color index to its name.
+    public static String colorName(int color) {
+        return color == WHITE ? "white" : "black";
+    }
+
+    // Returns the piece type index of a piece object.
+    public static int typeIndex(Piece piece) {
+        if (piece instanceof Pawn) return PAWN;
+        if (piece instanceof Knight) return KNIGHT;
+        if (piece instanceof Bishop) return BISHOP;
+        if (piece instanceof Rook) return ROOK;
+        if (piece instanceof Queen) return QUEEN;
+        return KING;
+    }
+
+    // Returns the type name of a piece type index.
+    public static String typeName(int type) {
+        return TYPE_NAMES[type];
+    }
+
+    // Creates a piece object for a piece index.
+    public static Piece createPiece(int piece) {
+        String color = colorName(colorOf(piece));
+        return switch (typeOf(piece)) {
+            case PAWN -> new Pawn(color);
+            case KNIGHT -> new Knight(color);
+            case BISHOP -> new Bishop(color);
+            case ROOK -> new Rook(color);
+            case QUEEN -> new Queen(color);
+            default -> new King(color);
+        };
+    }
+
+    // Derives castling rights from the unmoved kings and rooks on their home squares.
+    static int castlingRightsOf(Board board) {
+        int rights = 0;
+        if (isUnmoved(board, 7, 4, "white", King.class)) {
+            if (isUnmoved(board, 7, 7, "white", Rook.class)) rights |= WHITE_KINGSIDE;
+            if (isUnmoved(board, 7, 0, "white", Rook.class)) rights |= WHITE_QUEENSIDE;
+        }
+        if (isUnmoved(board, 0, 4, "black", King.class)) {
+            if (isUnmoved(board, 0, 7, "black", Rook.class)) rights |= BLACK_KINGSIDE;
+            if (isUnmoved(board, 0, 0, "black", Rook.class)) rights |= BLACK_QUEENSIDE;
+        }
+        return rights;
+    }
+
+    // Checks whether an unmoved piece of the given class and color stands on the square.
+    private static boolean isUnmoved(Board board, int row, int col, String color, Class<? extends Piece> type) {
+        Piece piece = board.getPiece(row, col);
+        return type.isInstance(piece) && !piece.hasMoved() && piece.getColor().equals(color);
+    }
+
+    // Checks whether a piece still stands where it could have started, keeping castling rights intact.
+    private boolean isOnHomeSquare(int piece, int sq) {
+        int color = colorOf(piece);
+        int homeRank = color == WHITE ? 0 : 7;
+        switch (typeOf(piece)) {
+            case PAWN:
+                return sq >>> 3 == (color == WHITE ? 1 : 6);
+            case KING:
+                return sq == homeRank * 8 + 4 && (castlingRights & (color == WHITE ? 3 : 12)) != 0;
+            case ROOK:
+                if (sq == homeRank * 8 + 7) return (castlingRights & (color == WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE)) != 0;
+                if (sq == homeRank * 8) return (castlingRights & (color == WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE)) != 0;
+                return false;
+            default:
+                return true;
+        }
+    }
+}
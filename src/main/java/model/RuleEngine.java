@@ -1,8 +1,14 @@
 package model;
 
+import java.util.List;
+
 /** Contains the logic for enforcing chess rules such as check, checkmate, castling, and promotion. */
 public class RuleEngine {
     private final Board board;
+    private final Position position = new Position();
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private int syncedVersion = -1;
+    private String syncedColor;
 
     // Initializes the rule engine with the given board.
     public RuleEngine(Board board) {
@@ -11,137 +17,55 @@ public class RuleEngine {
 
     // Validates whether a move is legal for the current player.
     public boolean isMoveValid(String from, String to, String currentColor) {
-        Piece piece = board.getPiece(from);
-        if (piece == null || !piece.getColor().equals(currentColor)) return false;
+        return findMove(from, to, currentColor) != Move.NONE;
+    }
 
-        int[] fromRC = Board.fromChessNotation(from);
-        int[] toRC = Board.fromChessNotation(to);
+    // Returns the encoded legal move between two positions for the current player, or Move.NONE.
+    public int findMove(String from, String to, String currentColor) {
+        int fromSq = Position.square(from);
+        int toSq = Position.square(to);
+        if (fromSq == Position.NO_SQUARE || toSq == Position.NO_SQUARE) return Move.NONE;
 
-        if (piece instanceof King && Math.abs(fromRC[1] - toRC[1]) == 2 && fromRC[0] == toRC[0]) {
-            return canCastle(from, to, currentColor);
+        sync(currentColor);
+        int count = MoveGenerator.generateLegalFrom(position, fromSq, moves);
+        for (int i = 0; i < count; i++) {
+            if (Move.to(moves[i]) == toSq) return moves[i];
         }
+        return Move.NONE;
+    }
 
-        if (!piece.isValidMove(fromRC[0], fromRC[1], toRC[0], toRC[1], board)) return false;
-
-        Piece target = board.getPiece(to);
-        if (target != null && target.getColor().equals(currentColor)) return false;
-
-        Piece originalTarget = board.getPiece(to);
-        board.setPiece(toRC[0], toRC[1], piece);
-        board.setPiece(fromRC[0], fromRC[1], null);
-        boolean check = isCheck(currentColor);
-        board.setPiece(fromRC[0], fromRC[1], piece);
-        board.setPiece(toRC[0], toRC[1], originalTarget);
+    // Adds every position the piece at the given position can legally move to.
+    public void addValidTargets(String from, String currentColor, List<String> targets) {
+        int fromSq = Position.square(from);
+        if (fromSq == Position.NO_SQUARE) return;
 
-        return !check;
+        sync(currentColor);
+        int count = MoveGenerator.generateLegalFrom(position, fromSq, moves);
+        for (int i = 0; i < count; i++) {
+            String to = Position.squareName(Move.to(moves[i]));
+            if (!targets.contains(to)) targets.add(to);
+        }
     }
 
     // Checks if the player's king is currently in check.
     public boolean isCheck(String color) {
-        String kingPos = findKingPosition(color);
-        if (kingPos == null) return false;
-
-        String enemyColor = color.equals("white") ? "black" : "white";
-
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                Piece p = board.getPiece(r, c);
-                if (p != null && p.getColor().equals(enemyColor)) {
-                    int[] kingRC = Board.fromChessNotation(kingPos);
-                    if (p.isValidMove(r, c, kingRC[0], kingRC[1], board)) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        sync(color);
+        return position.isInCheck(position.getSideToMove());
     }
 
     // Determines if the player is in checkmate.
     public boolean isCheckmate(String color) {
-        if (!isCheck(color)) return false;
-
-        for (int fromR = 0; fromR < 8; fromR++) {
-            for (int fromC = 0; fromC < 8; fromC++) {
-                Piece p = board.getPiece(fromR, fromC);
-                if (p != null && p.getColor().equals(color)) {
-                    for (int toR = 0; toR < 8; toR++) {
-                        for (int toC = 0; toC < 8; toC++) {
-                            String from = Board.toChessNotation(fromR, fromC);
-                            String to = Board.toChessNotation(toR, toC);
-                            if (isMoveValid(from, to, color)) {
-                                return false;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return true;
+        return isCheck(color) && MoveGenerator.generateLegal(position, moves) == 0;
     }
 
     // Determines if the player is in stalemate.
     public boolean isStalemate(String color) {
-        if (isCheck(color)) return false;
-
-        for (int fromR = 0; fromR < 8; fromR++) {
-            for (int fromC = 0; fromC < 8; fromC++) {
-                Piece p = board.getPiece(fromR, fromC);
-                if (p != null && p.getColor().equals(color)) {
-                    for (int toR = 0; toR < 8; toR++) {
-                        for (int toC = 0; toC < 8; toC++) {
-                            String from = Board.toChessNotation(fromR, fromC);
-                            String to = Board.toChessNotation(toR, toC);
-                            if (isMoveValid(from, to, color)) {
-                                return false;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return true;
+        return !isCheck(color) && MoveGenerator.generateLegal(position, moves) == 0;
     }
 
     // Checks if castling is allowed for the given king and rook positions.
     public boolean canCastle(String from, String to, String color) {
-        int row = color.equals("white") ? 7 : 0;
-        Piece king = board.getPiece(from);
-        if (!(king instanceof King) || king.hasMoved()) return false;
-
-        if (!from.equals(Board.toChessNotation(row, 4))) return false;
-
-        if (to.equals(Board.toChessNotation(row, 6))) {
-            Piece rook = board.getPiece(row, 7);
-            if (!(rook instanceof Rook) || rook.hasMoved() || !rook.getColor().equals(color)) return false;
-            if (board.getPiece(row, 5) != null || board.getPiece(row, 6) != null) return false;
-            if (isCheck(color)) return false;
-
-            board.setPiece(row, 5, king);
-            board.setPiece(row, 4, null);
-            boolean inDanger = isCheck(color);
-            board.setPiece(row, 4, king);
-            board.setPiece(row, 5, null);
-
-            return !inDanger;
-        }
-
-        if (to.equals(Board.toChessNotation(row, 2))) {
-            Piece rook = board.getPiece(row, 0);
-            if (!(rook instanceof Rook) || rook.hasMoved() || !rook.getColor().equals(color)) return false;
-            if (board.getPiece(row, 1) != null || board.getPiece(row, 2) != null || board.getPiece(row, 3) != null) return false;
-            if (isCheck(color)) return false;
-
-            board.setPiece(row, 3, king);
-            board.setPiece(row, 4, null);
-            boolean inDanger = isCheck(color);
-            board.setPiece(row, 4, king);
-            board.setPiece(row, 3, null);
-
-            return !inDanger;
-        }
-
-        return false;
+        return Move.isCastle(findMove(from, to, color));
     }
 
     // Returns the rook's movement during castling, if applicable.
@@ -160,19 +84,6 @@ public class RuleEngine {
         return null;
     }
 
-    // Finds the position of the king for the given color.
-    private String findKingPosition(String color) {
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                Piece piece = board.getPiece(r, c);
-                if (piece instanceof King && piece.getColor().equals(color)) {
-                    return Board.toChessNotation(r, c);
-                }
-            }
-        }
-        return null;
-    }
-
     // Checks if the pawn should be promoted based on its final position.
     public boolean shouldPromote(String pos, Piece piece) {
         return piece instanceof Pawn &&
@@ -185,24 +96,29 @@ public class RuleEngine {
         return new Queen(color);
     }
 
+    // Returns the piece named by a promotion letter (n, b, r or q), defaulting to a queen.
+    public Piece promotePawn(String color, char piece) {
+        return switch (piece) {
+            case 'n' -> new Knight(color);
+            case 'b' -> new Bishop(color);
+            case 'r' -> new Rook(color);
+            default -> new Queen(color);
+        };
+    }
+
     // Identifies the source of a check against the current player's king.
     public String getCheckSource(String color) {
-        String kingPos = findKingPosition(color);
-        if (kingPos == null) return null;
-
-        String enemyColor = color.equals("white") ? "black" : "white";
-        int[] kingRC = Board.fromChessNotation(kingPos);
-
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                Piece p = board.getPiece(r, c);
-                if (p != null && p.getColor().equals(enemyColor)) {
-                    if (p.isValidMove(r, c, kingRC[0], kingRC[1], board)) {
-                        return Board.toChessNotation(r, c);
-                    }
-                }
-            }
-        }
-        return null;
+        sync(color);
+        int us = position.getSideToMove();
+        long checkers = position.checkers(us);
+        return checkers == 0 ? null : Position.squareName(Long.numberOfTrailingZeros(checkers));
+    }
+
+    // Reloads the bitboard position when the board or the side to move has changed since the last query.
+    private void sync(String color) {
+        if (syncedVersion == board.getVersion() && color.equals(syncedColor)) return;
+        position.load(board, color);
+        syncedVersion = board.getVersion();
+        syncedColor = color;
     }
 }
@@ -0,0 +1,69 @@
+package model;
+
+import java.util.SplittableRandom;
+
+/** Random keys for Zobrist hashing, fixed by seed so every process and node computes the same hashes. */
+public final class Zobrist {
+    private static final long SEED = 0x5DEECE66DL;
+
+    private static final long[][] PIECE_SQUARE = new long[12][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    private static final long SIDE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int piece = 0; piece < 12; piece++) {
+            for (int sq = 0; sq < 64; sq++) {
+                PIECE_SQUARE[piece][sq] = random.nextLong();
+            }
+        }
+        // No castling rights hash to zero so an empty position has key zero.
+        for (int rights = 1; rights < 16; rights++) {
+            CASTLING[rights] = random.nextLong();
+        }
+        for (int file = 0; file < 8; file++) {
+            EN_PASSANT_FILE[file] = random.nextLong();
+        }
+        SIDE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    // Returns the key of a piece index standing on a square.
+    public static long piece(int piece, int sq) {
+        return PIECE_SQUARE[piece][sq];
+    }
+
+    // Returns the key of a piece object standing on a square.
+    public static long piece(Piece piece, int sq) {
+        return PIECE_SQUARE[Position.pieceIndex(Position.colorIndex(piece.getColor()), Position.typeIndex(piece))][sq];
+    }
+
+    // Returns the key of a castling rights mask.
+    public static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    // Returns the key of an en-passant square, or zero when there is none.
+    public static long enPassant(int sq) {
+        return sq == Position.NO_SQUARE ? 0L : EN_PASSANT_FILE[sq & 7];
+    }
+
+    // Returns the key toggled when black is to move.
+    public static long side() {
+        return SIDE;
+    }
+
+    // Computes the key of a position from scratch, for verifying the incrementally updated one.
+    public static long keyOf(Position pos) {
+        long key = 0L;
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = pos.pieceAt(sq);
+            if (piece != Position.EMPTY) key ^= PIECE_SQUARE[piece][sq];
+        }
+        if (pos.getSideToMove() == Position.BLACK) key ^= SIDE;
+        return key ^ CASTLING[pos.getCastlingRights()] ^ enPassant(pos.getEnPassantSquare());
+    }
+}
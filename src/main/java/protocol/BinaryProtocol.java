@@ -0,0 +1,223 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import model.Position;
+
+/**
+ * Length-prefixed binary framing negotiated with a "HELLO binary 1" line; text clients that never say hello keep
+ * the line protocol. A frame is a big-endian u16 length, then a 1-byte opcode and its payload; the length counts
+ * the opcode and payload. Moves travel as 16 bits: from in bits 0-5, to in bits 6-11, promotion in bits 12-14.
+ * In timed games TURN and MOVE payloads end with both clocks as big-endian u32 milliseconds, white then black.
+ */
+public final class BinaryProtocol {
+    public static final String HELLO = "HELLO binary 1";
+    public static final String ACCEPTED = "OK binary 1";
+    public static final int HEADER_BYTES = 2;
+    public static final int MAX_FRAME = 4096;
+
+    public static final int START = 1;
+    public static final int READY = 2;
+    public static final int TURN = 3;
+    public static final int MOVE = 4;
+    public static final int OPPONENT_LEFT = 5;
+    public static final int EXIT = 6;
+    public static final int ERROR = 7;
+    public static final int GAME_OVER = 8;
+    public static final int TEXT = 9;
+
+    public static final int NO_PROMOTION = 0;
+    public static final int MALFORMED_MOVE = -1;
+    public static final String CLOCK = "CLOCK";
+    private static final int CLOCK_BYTES = 8;
+    private static final String PROMOTION_NAMES = " nbrq";
+
+    private BinaryProtocol() {
+    }
+
+    // Packs a move; promotion is 0 for none or 1 to 4 for knight, bishop, rook and queen.
+    public static int encodeMove(int from, int to, int promotion) {
+        return from | (to << 6) | (promotion << 12);
+    }
+
+    // Returns the source square of a packed move, with a1 = 0 and h8 = 63.
+    public static int moveFrom(int move) {
+        return move & 0x3F;
+    }
+
+    // Returns the target square of a packed move.
+    public static int moveTo(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    // Returns the promotion field of a packed move.
+    public static int movePromotion(int move) {
+        return (move >>> 12) & 0x7;
+    }
+
+    // Returns the promotion letter used after PROMOTE in the text protocol, or 0 when the field is not a piece.
+    public static char promotionLetter(int promotion) {
+        return promotion >= 1 && promotion <= 4 ? PROMOTION_NAMES.charAt(promotion) : 0;
+    }
+
+    // Returns the promotion field for a PROMOTE letter, or NO_PROMOTION when the letter is not a piece.
+    public static int promotionOf(String letter) {
+        int index = letter.length() == 1 ? PROMOTION_NAMES.indexOf(letter.charAt(0)) : -1;
+        return index > 0 ? index : NO_PROMOTION;
+    }
+
+    // Returns the complete frame of a packed move.
+    public static byte[] moveFrame(int move) {
+        return new byte[]{0, 3, MOVE, (byte) (move >>> 8), (byte) move};
+    }
+
+    // Returns the complete frame of a packed move followed by both players' remaining milliseconds.
+    public static byte[] moveFrame(int move, int whiteMillis, int blackMillis) {
+        return ByteBuffer.allocate(HEADER_BYTES + 3 + CLOCK_BYTES).putShort((short) (3 + CLOCK_BYTES)).put((byte) MOVE)
+                .putShort((short) move).putInt(whiteMillis).putInt(blackMillis).array();
+    }
+
+    // Returns the complete frame for a text protocol line, falling back to a TEXT frame for lines it does not know.
+    public static byte[] encode(String line) {
+        if (line.equals("READY")) return frame(READY);
+        if (line.equals("OPPONENT_LEFT")) return frame(OPPONENT_LEFT);
+        if (line.equals("EXIT")) return frame(EXIT);
+        if (line.startsWith("START ")) return startFrame(line.substring(6));
+        if (line.startsWith("TURN ")) {
+            String[] parts = line.split(" ");
+            int clock = clockIndex(parts);
+            if (clock < 0) return frame(TURN, colorByte(parts[1]));
+            byte[] payload = ByteBuffer.allocate(1 + CLOCK_BYTES).put((byte) colorByte(parts[1]))
+                    .putInt(Integer.parseInt(parts[clock + 1])).putInt(Integer.parseInt(parts[clock + 2])).array();
+            return frame(TURN, payload);
+        }
+        if (line.startsWith("ERROR ")) return frame(ERROR, line.substring(6).getBytes(StandardCharsets.UTF_8));
+        if (line.startsWith("GAME_OVER ")) return frame(GAME_OVER, line.substring(10).getBytes(StandardCharsets.UTF_8));
+        if (line.startsWith("MOVE ")) {
+            String[] parts = line.split(" ");
+            int from = Position.square(parts[1]);
+            int to = parts.length > 2 ? Position.square(parts[2]) : Position.NO_SQUARE;
+            if (from != Position.NO_SQUARE && to != Position.NO_SQUARE) {
+                int promotion = parts.length > 4 && parts[3].equals("PROMOTE") ? promotionOf(parts[4]) : NO_PROMOTION;
+                int clock = clockIndex(parts);
+                if (clock < 0) return moveFrame(encodeMove(from, to, promotion));
+                return moveFrame(encodeMove(from, to, promotion), Integer.parseInt(parts[clock + 1]),
+                        Integer.parseInt(parts[clock + 2]));
+            }
+        }
+        return frame(TEXT, line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Returns the text protocol line for a frame whose payload lies between the buffer's position and limit.
+    public static String decode(int opcode, ByteBuffer payload) {
+        return switch (opcode) {
+            case START -> "START " + colorName(payload) + sessionToken(payload);
+            case READY -> "READY";
+            case TURN -> "TURN " + colorName(payload) + clockText(payload, 1);
+            case MOVE -> {
+                int move = readMove(payload);
+                if (move == MALFORMED_MOVE) throw new IllegalArgumentException("Malformed MOVE frame");
+                yield moveText(move) + clockText(payload, 2);
+            }
+            case OPPONENT_LEFT -> "OPPONENT_LEFT";
+            case EXIT -> "EXIT";
+            case ERROR -> "ERROR " + utf8(payload);
+            case GAME_OVER -> "GAME_OVER " + utf8(payload);
+            case TEXT -> utf8(payload);
+            default -> throw new IllegalArgumentException("Unknown opcode " + opcode);
+        };
+    }
+
+    // Returns the text protocol form of a packed move, naming the piece only for under-promotions.
+    public static String moveText(int move) {
+        String text = "MOVE " + Position.squareName(moveFrom(move)) + " " + Position.squareName(moveTo(move));
+        char promotion = promotionLetter(movePromotion(move));
+        return promotion != 0 && promotion != 'q' ? text + " PROMOTE " + promotion : text;
+    }
+
+    // Returns the packed move carried by a MOVE frame payload, or MALFORMED_MOVE when the payload is too short or the
+    // promotion field names no piece.
+    public static int readMove(ByteBuffer payload) {
+        if (payload.remaining() < 2) return MALFORMED_MOVE;
+        int move = payload.getShort(payload.position()) & 0xFFFF;
+        return movePromotion(move) <= 4 ? move : MALFORMED_MOVE;
+    }
+
+    // Checks whether the opcode is one a client may send: READY, MOVE, EXIT or TEXT.
+    public static boolean isClientOpcode(int opcode) {
+        return opcode == READY || opcode == MOVE || opcode == EXIT || opcode == TEXT;
+    }
+
+    // Returns the index of the CLOCK keyword when two numbers follow it, or -1.
+    private static int clockIndex(String[] parts) {
+        for (int i = 2; i + 2 < parts.length; i++) {
+            if (parts[i].equals(CLOCK)) return i;
+        }
+        return -1;
+    }
+
+    // Reads the clocks after the given payload offset as " CLOCK <white ms> <black ms>", or "" when there are none.
+    private static String clockText(ByteBuffer payload, int offset) {
+        if (payload.remaining() < offset + CLOCK_BYTES) return "";
+        int at = payload.position() + offset;
+        return " " + CLOCK + " " + payload.getInt(at) + " " + payload.getInt(at + 4);
+    }
+
+    // Returns a frame with no payload.
+    public static byte[] frame(int opcode) {
+        return new byte[]{0, 1, (byte) opcode};
+    }
+
+    // Returns a frame with a one-byte payload.
+    private static byte[] frame(int opcode, int value) {
+        return new byte[]{0, 2, (byte) opcode, (byte) value};
+    }
+
+    // Returns a frame with the given payload.
+    private static byte[] frame(int opcode, byte[] payload) {
+        int length = Math.min(payload.length, MAX_FRAME - 1) + 1;
+        byte[] frame = new byte[HEADER_BYTES + length];
+        frame[0] = (byte) (length >>> 8);
+        frame[1] = (byte) length;
+        frame[2] = (byte) opcode;
+        System.arraycopy(payload, 0, frame, 3, length - 1);
+        return frame;
+    }
+
+    // Returns a START frame: the color byte followed by the session token, if any, as ASCII.
+    private static byte[] startFrame(String rest) {
+        int space = rest.indexOf(' ');
+        String color = space < 0 ? rest : rest.substring(0, space);
+        byte[] token = space < 0 ? new byte[0] : rest.substring(space + 1).getBytes(StandardCharsets.US_ASCII);
+        byte[] payload = new byte[1 + token.length];
+        payload[0] = (byte) colorByte(color);
+        System.arraycopy(token, 0, payload, 1, token.length);
+        return frame(START, payload);
+    }
+
+    // Reads the session token after a START frame's color byte, with its leading space, or "" when there is none.
+    private static String sessionToken(ByteBuffer payload) {
+        if (payload.remaining() <= 1) return "";
+        byte[] bytes = new byte[payload.remaining() - 1];
+        payload.duplicate().position(payload.position() + 1).get(bytes);
+        return " " + new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    // Maps a color name to its payload byte.
+    private static int colorByte(String color) {
+        return color.equals("black") ? 1 : 0;
+    }
+
+    // Reads a color payload byte as its name.
+    private static String colorName(ByteBuffer payload) {
+        return payload.hasRemaining() && payload.get(payload.position()) == 1 ? "black" : "white";
+    }
+
+    // Decodes the remaining payload as UTF-8 text.
+    private static String utf8(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,153 @@
+package server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import engine.Engine;
+import engine.SearchLimits;
+import engine.SearchResult;
+import model.Board;
+import model.Fen;
+import model.Move;
+import model.Position;
+import model.RuleEngine;
+
+/**
+ * Plays one side of a room with the built-in engine, speaking the same text protocol as a client. Bots share a small
+ * pool of engines, one search thread per core, and think for less while searches are queued on their engine.
+ */
+public class BotPlayer implements Player {
+    private static final long THINK_MILLIS = 1000;
+    private static final long MIN_THINK_MILLIS = 50;
+    private static final int ENGINE_HASH_MEGABYTES = 4;
+    private static final int MAX_REJECTIONS = 2;
+    private static final AtomicInteger botCount = new AtomicInteger(1);
+    private static final Engine[] engines = newEngines(Runtime.getRuntime().availableProcessors());
+    private static final AtomicIntegerArray queuedSearches = new AtomicIntegerArray(engines.length);
+    private static final ExecutorService events = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "bot-player");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int number = botCount.getAndIncrement();
+    private final String name = "BOT" + number;
+    private final int slot = number % engines.length;
+    private Board board = new Board();
+    private RuleEngine ruleEngine = new RuleEngine(board);
+    private volatile ChessRoom room;
+    private String color;
+    private String turn = "white";
+    private boolean started;
+    private boolean finished;
+    private int rejections;
+
+    // Creates the shared engines, each with its own search thread and a small table.
+    private static Engine[] newEngines(int count) {
+        Engine[] pool = new Engine[count];
+        for (int i = 0; i < count; i++) pool[i] = new Engine(ENGINE_HASH_MEGABYTES, 1);
+        return pool;
+    }
+
+    // Returns the bot's name.
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    // Queues a message for the bot thread so callers never wait on the bot or re-enter the room.
+    @Override
+    public void sendMessage(String msg) {
+        events.execute(() -> handleMessage(msg));
+    }
+
+    // Sets the game room the bot belongs to.
+    @Override
+    public void setRoom(ChessRoom room) {
+        this.room = room;
+    }
+
+    // Reacts to a protocol message on the bot thread.
+    private void handleMessage(String msg) {
+        if (finished) return;
+        if (msg.startsWith("START")) {
+            color = msg.split(" ")[1];
+            room.setReady(this);
+        } else if (msg.startsWith("TURN")) {
+            turn = msg.split(" ")[1];
+            started = true;
+            think();
+        } else if (msg.startsWith("MOVE")) {
+            String[] parts = msg.split(" ");
+            char promotion = parts.length > 4 && parts[3].equals("PROMOTE") ? parts[4].charAt(0) : 'q';
+            applyMove(parts[1], parts[2], promotion);
+            rejections = 0;
+            think();
+        } else if (msg.startsWith("ERROR")) {
+            rejected(msg);
+        } else if (msg.equals("OPPONENT_LEFT") || msg.startsWith("GAME_OVER")) {
+            finished = true;
+        }
+    }
+
+    // Recovers from a rejected move by reloading the room's position and searching again; a bot whose moves keep
+    // being rejected forfeits rather than leave its opponent waiting on a move that never comes.
+    private void rejected(String msg) {
+        Log.warn("bot-move-rejected", name, msg);
+        if (msg.contains("game is over") || msg.contains("out of time")) {
+            finished = true;
+        } else if (++rejections >= MAX_REJECTIONS) {
+            finished = true;
+            room.notifyOpponentDisconnected(this);
+        } else {
+            board = Fen.toBoard(room.fen());
+            ruleEngine = new RuleEngine(board);
+            turn = board.getSideToMove();
+            think();
+        }
+    }
+
+    // Starts a search when it is the bot's turn, shortening it by the searches already queued on the bot's engine;
+    // the result is played back on the bot thread.
+    private void think() {
+        if (!started || !turn.equals(color)) return;
+        long millis = Math.max(MIN_THINK_MILLIS, THINK_MILLIS / (queuedSearches.getAndIncrement(slot) + 1));
+        engines[slot].search(board, color, SearchLimits.ofTime(millis))
+                .whenComplete((result, failure) -> queuedSearches.decrementAndGet(slot))
+                .thenAcceptAsync(this::play, events);
+    }
+
+    // Plays the searched move, naming the promotion piece after PROMOTE when it is not the default queen.
+    private void play(SearchResult result) {
+        int move = result.getBestMove();
+        if (finished || !turn.equals(color) || move == Move.NONE) return;
+
+        String from = Position.squareName(Move.from(move));
+        String to = Position.squareName(Move.to(move));
+        String msg = "MOVE " + from + " " + to;
+        if (Move.isCastle(move)) {
+            String[] rook = ruleEngine.getCastleRookMove(from, to, color);
+            if (rook != null) msg += " CASTLE " + rook[0] + " " + rook[1];
+        }
+        char promotion = Move.isPromotion(move) ? Move.promotionLetter(move) : 'q';
+        if (promotion != 'q') msg += " PROMOTE " + promotion;
+        if (Log.enabled(LogLevel.INFO)) {
+            Log.info("bot-move", name, room.getId(), Move.toNotation(move) + " (" + result + ")");
+        }
+
+        applyMove(from, to, promotion);
+        room.forwardMove(this, msg);
+    }
+
+    // Applies a move to the bot's board, promoting pawns that reach the last rank, and passes the turn.
+    private void applyMove(String from, String to, char promotion) {
+        board.movePiece(from, to);
+        if (ruleEngine.shouldPromote(to, board.getPiece(to))) {
+            int[] square = Board.fromChessNotation(to);
+            board.setPiece(square[0], square[1], ruleEngine.promotePawn(board.getPiece(to).getColor(), promotion));
+        }
+        turn = turn.equals("white") ? "black" : "white";
+    }
+}
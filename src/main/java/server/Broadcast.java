@@ -0,0 +1,44 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import protocol.BinaryProtocol;
+
+/** A message for many recipients, encoded once as a line and once as a frame into read-only buffers they all share. */
+public final class Broadcast {
+    private final String text;
+    private final ByteBuffer line;
+    private final ByteBuffer frame;
+
+    private Broadcast(String text, byte[] frame) {
+        this.text = text;
+        this.line = ByteBuffer.wrap((text + "\n").getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+        this.frame = ByteBuffer.wrap(frame).asReadOnlyBuffer();
+    }
+
+    // Encodes a protocol line for broadcasting.
+    public static Broadcast of(String text) {
+        return new Broadcast(text, BinaryProtocol.encode(text));
+    }
+
+    // Encodes a relayed move for broadcasting, framed as its packed form for binary recipients.
+    public static Broadcast move(int move, String text) {
+        return new Broadcast(text, BinaryProtocol.moveFrame(move));
+    }
+
+    // Encodes a relayed move of a timed game, whose frame also carries both clocks.
+    public static Broadcast move(int move, int whiteMillis, int blackMillis, String text) {
+        return new Broadcast(text, BinaryProtocol.moveFrame(move, whiteMillis, blackMillis));
+    }
+
+    // Returns the message as a text line.
+    public String text() {
+        return text;
+    }
+
+    // Returns a private view of the shared bytes, so each recipient can drain it at its own pace without copying.
+    public ByteBuffer bytes(boolean binary) {
+        return (binary ? frame : line).duplicate();
+    }
+}
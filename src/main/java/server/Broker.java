@@ -0,0 +1,31 @@
+package server;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/** Carries envelopes between server nodes; envelopes from one node to another arrive in the order they were sent. */
+public interface Broker {
+    // Returns the id of the node this broker serves.
+    int nodeId();
+
+    // Starts delivering envelopes addressed to this node to the handler, which must not block.
+    void start(Consumer<Envelope> handler) throws IOException;
+
+    // Queues an envelope for the node without waiting on the network; returns false when it had to be dropped.
+    boolean send(int node, Envelope envelope);
+
+    // Stops sending and receiving.
+    void close();
+
+    // Returns the number of envelopes queued for sending.
+    long sentCount();
+
+    // Returns the number of envelopes received and handed on.
+    long receivedCount();
+
+    // Returns the number of batches written.
+    long batchCount();
+
+    // Returns the number of envelopes that could not be sent.
+    long droppedCount();
+}
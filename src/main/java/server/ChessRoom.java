@@ -1,57 +1,614 @@
 package server;
 
-/** Manages a game session between two players, handling state, turns, and disconnection. */
+import java.security.SecureRandom;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import metrics.LatencyRecorder;
+import model.Board;
+import model.Fen;
+import model.Move;
+import model.Position;
+import model.RuleEngine;
+import protocol.BinaryProtocol;
+
+/**
+ * Manages a game session between two players and any number of spectators, owning the authoritative board and handling
+ * turns and disconnection.
+ */
 public class ChessRoom {
-    private final ClientHandler whitePlayer;
-    private final ClientHandler blackPlayer;
+    private static final LatencyRecorder validationLatency = new LatencyRecorder();
+    private static final LatencyRecorder relayLatency = new LatencyRecorder();
+    private static final int QUEEN_PROMOTION = 4;
+    private static final int NO_MOVE = -1;
+    private static final SecureRandom tokenSource = new SecureRandom();
+    private static final LongAdder flagFalls = new LongAdder();
+
+    private final long id;
+    private final GameJournal journal;
+    private final Consumer<ChessRoom> onClose;
+    private final long whiteToken;
+    private final long blackToken;
+    private volatile Player whitePlayer;
+    private volatile Player blackPlayer;
+    private TimerWheel.Timeout whiteGrace;
+    private TimerWheel.Timeout blackGrace;
     private boolean whiteReady = false;
     private boolean blackReady = false;
+    private final Set<Player> spectators = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock fanOutLock = new ReentrantLock();
+    private final AtomicBoolean hasNotified = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile long lastActivity = System.nanoTime();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Board board = new Board();
+    private final RuleEngine ruleEngine = new RuleEngine(board);
+    private String turn = "white";
+    private int ply;
+    private int lastMove = NO_MOVE;
+    private boolean started;
+    private boolean finished;
+    private GameClock clock;
+    private TimerWheel clockWheel;
+    private TimerWheel.Timeout flagTimer;
 
-    // Initializes the room with two players.
-    public ChessRoom(ClientHandler white, ClientHandler black) {
+    // Initializes the room with its id, two players, the journal (or null) and the hook that unregisters it on close.
+    public ChessRoom(long id, Player white, Player black, GameJournal journal, Consumer<ChessRoom> onClose) {
+        this(id, white, black, newToken(), newToken(), journal, onClose);
+    }
+
+    // Initializes the room with the seat tokens it was issued before, as when it is restored from the journal.
+    ChessRoom(long id, Player white, Player black, long whiteToken, long blackToken, GameJournal journal,
+              Consumer<ChessRoom> onClose) {
+        this.id = id;
+        this.journal = journal;
+        this.onClose = onClose;
         this.whitePlayer = white;
         this.blackPlayer = black;
+        this.whiteToken = whiteToken;
+        this.blackToken = blackToken;
     }
 
-    // Starts the game by sending START messages to both players.
+    // Starts the game by sending each player START with their color and the token that lets them resume the seat.
     public void start() {
-        whitePlayer.sendMessage("START white");
-        blackPlayer.sendMessage("START black");
-        System.out.println("Game started between " + whitePlayer.getName() + " and " + blackPlayer.getName());
+        if (journal != null) journal.roomStarted(id, whiteToken, blackToken);
+        whitePlayer.sendMessage("START white " + tokenText(whiteToken));
+        blackPlayer.sendMessage("START black " + tokenText(blackToken));
+        Log.info("game-started", whitePlayer.getName(), id, "vs " + blackPlayer.getName());
+    }
+
+    // Puts the game under a time control whose flag-falls the wheel detects; a game already under way, as one restored
+    // from the journal, starts the side to move's clock at once with the full base time.
+    void useClock(TimeControl control, TimerWheel wheel) {
+        lock.lock();
+        try {
+            clock = new GameClock(control);
+            clockWheel = wheel;
+            if (started && !finished) {
+                long now = System.nanoTime();
+                clock.start(turn, now);
+                scheduleFlag(now);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Marks a player as ready and starts the turn, and white's clock, when both are ready; the lock is released before
+    // sending.
+    public void setReady(Player player) {
+        long now = System.nanoTime();
+        lastActivity = now;
+        String turnMessage = null;
+        lock.lock();
+        try {
+            if (player == whitePlayer) whiteReady = true;
+            else if (player == blackPlayer) blackReady = true;
+
+            if (whiteReady && blackReady) {
+                whiteReady = false;
+                blackReady = false;
+                if (clock != null && !started) {
+                    clock.start("white", now);
+                    scheduleFlag(now);
+                }
+                started = true;
+                turnMessage = clock == null ? "TURN white" : "TURN white " + clock.text(now);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        Log.info("ready", player.getName(), id, null);
+
+        if (turnMessage != null) {
+            whitePlayer.sendMessage(turnMessage);
+            blackPlayer.sendMessage(turnMessage);
+        }
+    }
+
+    // Parses a text MOVE line, with optional CASTLE and PROMOTE suffixes, then validates and relays it.
+    public void forwardMove(Player from, String moveMessage) {
+        forwardMove(from, moveMessage, System.nanoTime());
+    }
+
+    // Parses, validates and relays a text MOVE line that arrived at the given System.nanoTime value.
+    public void forwardMove(Player from, String moveMessage, long receivedAt) {
+        String[] parts = moveMessage.split(" ");
+        if (parts.length < 3) {
+            from.sendMessage("ERROR malformed move: " + moveMessage);
+            return;
+        }
+        int promotion = BinaryProtocol.NO_PROMOTION;
+        for (int i = 3; i + 1 < parts.length; i++) {
+            if (parts[i].equals("PROMOTE")) promotion = BinaryProtocol.promotionOf(parts[i + 1]);
+        }
+        playMove(from, parts[1], parts[2], promotion, moveMessage, receivedAt);
+    }
+
+    // Validates and relays a move received as a packed binary move.
+    public void forwardMove(Player from, int packedMove) {
+        forwardMove(from, packedMove, System.nanoTime());
+    }
+
+    // Validates and relays a packed binary move that arrived at the given System.nanoTime value.
+    public void forwardMove(Player from, int packedMove, long receivedAt) {
+        playMove(from, Position.squareName(BinaryProtocol.moveFrom(packedMove)),
+                Position.squareName(BinaryProtocol.moveTo(packedMove)), BinaryProtocol.movePromotion(packedMove), null,
+                receivedAt);
+    }
+
+    // Validates a move against the room's board and relays it to the opponent, or rejects it to the sender. The mover's
+    // clock stops at the time the move arrived, so time spent queued inside the server is never charged to them.
+    private void playMove(Player from, String fromSquare, String toSquare, int promotion, String original,
+                          long receivedAt) {
+        long start = System.nanoTime();
+        lastActivity = start;
+        String error = null;
+        String relay = null;
+        int packed = 0;
+        String gameOver = null;
+        boolean fanOut = false;
+        boolean timed = false;
+        int whiteMillis = 0;
+        int blackMillis = 0;
+        Player to;
+
+        lock.lock();
+        try {
+            String color = from == whitePlayer ? "white" : from == blackPlayer ? "black" : null;
+            to = from == whitePlayer ? blackPlayer : whitePlayer;
+            if (color == null) {
+                error = "not seated in this game";
+            } else if (finished) {
+                error = "game is over";
+            } else if (!started) {
+                error = "game has not started";
+            } else if (!color.equals(turn)) {
+                error = "not your turn";
+            } else if (clock != null && clock.remainingNanos(color, receivedAt) <= 0) {
+                error = "out of time";
+                gameOver = flagFall(color);
+            } else {
+                int move = ruleEngine.findMove(fromSquare, toSquare, color);
+                if (move == Move.NONE) {
+                    error = "illegal move";
+                } else {
+                    promotion = promotionFor(move, promotion);
+                    relay = applyMove(move, fromSquare, toSquare, color, promotion);
+                    packed = BinaryProtocol.encodeMove(Move.from(move), Move.to(move), promotion);
+                    ply++;
+                    lastMove = packed;
+                    // Safe under the room lock: the journal never waits, it drops the record when its ring is full.
+                    if (journal != null) journal.moveAccepted(id, ply, packed);
+                    turn = opposite(color);
+                    if (ruleEngine.isCheckmate(turn)) {
+                        gameOver = "GAME_OVER checkmate " + color;
+                    } else if (ruleEngine.isStalemate(turn)) {
+                        gameOver = "GAME_OVER stalemate";
+                    }
+                    finished = gameOver != null;
+                    if (clock != null) {
+                        clock.press(color, receivedAt);
+                        if (!finished) scheduleFlag(receivedAt);
+                        timed = true;
+                        whiteMillis = clock.remainingMillis("white", receivedAt);
+                        blackMillis = clock.remainingMillis("black", receivedAt);
+                        relay += " " + BinaryProtocol.CLOCK + " " + whiteMillis + " " + blackMillis;
+                    }
+                    // Taken before the room lock is released, so spectators see moves in order and a late joiner's
+                    // snapshot never overlaps a broadcast.
+                    fanOut = !spectators.isEmpty();
+                    if (fanOut) fanOutLock.lock();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        // The fan-out lock taken above is held from here until the relay is done, whatever the relay throws.
+        try {
+            validationLatency.record(System.nanoTime() - start);
+
+            if (error != null) {
+                String rejected = original != null ? original : "MOVE " + fromSquare + " " + toSquare;
+                from.sendMessage("ERROR " + error + ": " + rejected);
+                if (gameOver != null) finishOnTime(gameOver);
+                return;
+            }
+            Broadcast timedRelay = timed ? Broadcast.move(packed, whiteMillis, blackMillis, relay) : null;
+            if (timedRelay != null) {
+                to.sendBroadcast(timedRelay);
+            } else {
+                to.sendMove(packed, relay);
+            }
+            relayLatency.record(System.nanoTime() - receivedAt);
+            if (fanOut) {
+                Broadcast move = timedRelay != null ? timedRelay : Broadcast.move(packed, relay);
+                for (Player spectator : spectators) spectator.sendSpectatorMove(move);
+                if (gameOver != null) broadcast(Broadcast.of(gameOver));
+            }
+        } finally {
+            if (fanOut) fanOutLock.unlock();
+        }
+        if (gameOver != null) {
+            Log.info("game-over", null, id, gameOver);
+            whitePlayer.sendMessage(gameOver);
+            blackPlayer.sendMessage(gameOver);
+            close();
+        }
+    }
+
+    // Replaces the flag timer with one for the side to move's remaining time; the caller holds the room lock.
+    private void scheduleFlag(long now) {
+        if (flagTimer != null) flagTimer.cancel();
+        flagTimer = clockWheel.schedule(clock.remainingNanos(turn, now), TimeUnit.NANOSECONDS, this::flagIfOutOfTime);
+    }
+
+    // Ends the game if the side to move's clock has run out by the time the wheel fires, or waits again if a move
+    // reset it in the meantime.
+    private void flagIfOutOfTime() {
+        String gameOver;
+        lock.lock();
+        try {
+            if (finished) return;
+            long now = System.nanoTime();
+            if (clock.remainingNanos(turn, now) > 0) {
+                scheduleFlag(now);
+                return;
+            }
+            gameOver = flagFall(turn);
+        } finally {
+            lock.unlock();
+        }
+        finishOnTime(gameOver);
+    }
+
+    // Finishes the game on time against the color and returns the result; the caller holds the room lock.
+    private String flagFall(String color) {
+        finished = true;
+        flagFalls.increment();
+        return "GAME_OVER timeout " + opposite(color);
+    }
+
+    // Tells both players that a flag fell, then closes the room, which tells the spectators.
+    private void finishOnTime(String gameOver) {
+        Log.info("game-over", null, id, gameOver);
+        whitePlayer.sendMessage(gameOver);
+        blackPlayer.sendMessage(gameOver);
+        close(gameOver);
+    }
+
+    // Hands one encoded message to every spectator; the caller holds the fan-out lock.
+    private void broadcast(Broadcast message) {
+        for (Player spectator : spectators) spectator.sendBroadcast(message);
+    }
+
+    // Adds a spectator and sends it a snapshot of the game, after which it receives every move; returns false when the
+    // game is already over.
+    public boolean watch(Player spectator) {
+        lock.lock();
+        try {
+            if (finished) return false;
+            // Waits out a broadcast still in flight, whose move the snapshot below already contains.
+            fanOutLock.lock();
+            try {
+                spectators.add(spectator);
+                spectator.setRoom(this);
+                spectator.sendMessage(snapshot("spectator"));
+            } finally {
+                fanOutLock.unlock();
+            }
+        } finally {
+            lock.unlock();
+        }
+        Log.info("watching", spectator.getName(), id, null);
+        return true;
+    }
+
+    // Removes a spectator; returns false when the player was not watching this room.
+    public boolean unwatch(Player spectator) {
+        return spectators.remove(spectator);
+    }
+
+    // Returns the number of spectators.
+    public int spectatorCount() {
+        return spectators.size();
     }
 
-    // Marks a player as ready and starts the turn when both are ready.
-    public synchronized void setReady(ClientHandler player) {
-        if (player == whitePlayer) whiteReady = true;
-        else if (player == blackPlayer) blackReady = true;
+    // Tells the spectators how the game ended and detaches them from the room.
+    private void releaseSpectators(String result) {
+        if (spectators.isEmpty()) return;
+        fanOutLock.lock();
+        try {
+            if (result != null) broadcast(Broadcast.of(result));
+            for (Player spectator : spectators) spectator.setRoom(null);
+            spectators.clear();
+        } finally {
+            fanOutLock.unlock();
+        }
+    }
+
+    // Plays a validated move on the room's board and returns the canonical move message.
+    private String applyMove(int move, String from, String to, String color, int promotion) {
+        String relay = "MOVE " + from + " " + to;
+        if (Move.isCastle(move)) {
+            String[] rook = ruleEngine.getCastleRookMove(from, to, color);
+            relay += " CASTLE " + rook[0] + " " + rook[1];
+        }
+        board.movePiece(from, to);
+        if (promotion != BinaryProtocol.NO_PROMOTION) {
+            char piece = BinaryProtocol.promotionLetter(promotion);
+            int[] square = Board.fromChessNotation(to);
+            board.setPiece(square[0], square[1], ruleEngine.promotePawn(color, piece));
+            if (piece != 'q') relay += " PROMOTE " + piece;
+        }
+        return relay;
+    }
+
+    // Returns the promotion field to play and relay for a legal move: none unless it promotes, and a queen when the
+    // requested field names no piece, so nothing outside 1 to 4 ever reaches the board, the relay or the journal.
+    private static int promotionFor(int move, int requested) {
+        if (!Move.isPromotion(move)) return BinaryProtocol.NO_PROMOTION;
+        return BinaryProtocol.promotionLetter(requested) == 0 ? QUEEN_PROMOTION : requested;
+    }
+
+    // Returns the other color.
+    private static String opposite(String color) {
+        return color.equals("white") ? "black" : "white";
+    }
+
+    // Returns the histogram of time spent validating and applying moves, shared by all rooms.
+    public static LatencyRecorder validationLatency() {
+        return validationLatency;
+    }
+
+    // Returns the histogram of time from a move arriving to its relay being queued for the opponent, shared by all rooms.
+    public static LatencyRecorder relayLatency() {
+        return relayLatency;
+    }
+
+    // Returns the number of games lost on time, across all rooms.
+    public static long flagCount() {
+        return flagFalls.sum();
+    }
+
+    // Holds a dropped player's seat for the grace period instead of ending the game; returns false when there is no
+    // game in progress to hold, in which case the caller should treat the disconnect as final.
+    public boolean suspend(Player leaver, TimerWheel wheel, long graceNanos) {
+        Player opponent;
+        lock.lock();
+        try {
+            if (finished || !started) return false;
+            if (leaver == whitePlayer) {
+                whitePlayer = new VacantSeat("white");
+                whiteGrace = holdSeat(whitePlayer, wheel, graceNanos);
+                opponent = blackPlayer;
+            } else if (leaver == blackPlayer) {
+                blackPlayer = new VacantSeat("black");
+                blackGrace = holdSeat(blackPlayer, wheel, graceNanos);
+                opponent = whitePlayer;
+            } else {
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        Log.info("seat-held", leaver.getName(), id, TimeUnit.NANOSECONDS.toSeconds(graceNanos) + "s");
+        opponent.sendMessage("OPPONENT_AWAY " + TimeUnit.NANOSECONDS.toSeconds(graceNanos));
+        return true;
+    }
+
+    // Starts the grace timer of every seat that is empty, as for a room restored from the journal.
+    void holdVacantSeats(TimerWheel wheel, long graceNanos) {
+        lock.lock();
+        try {
+            if (whitePlayer instanceof VacantSeat) whiteGrace = holdSeat(whitePlayer, wheel, graceNanos);
+            if (blackPlayer instanceof VacantSeat) blackGrace = holdSeat(blackPlayer, wheel, graceNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Schedules the forfeit of an empty seat, which happens only if nobody has taken the seat back by then.
+    private TimerWheel.Timeout holdSeat(Player seat, TimerWheel wheel, long graceNanos) {
+        return wheel.schedule(graceNanos, TimeUnit.NANOSECONDS, () -> {
+            if (seat == whitePlayer || seat == blackPlayer) notifyOpponentDisconnected(seat);
+        });
+    }
+
+    // Seats a reconnecting player holding the token and sends them a snapshot of the game; returns false when the
+    // token names no seat of this room or the game is already over.
+    public boolean resume(long token, Player player) {
+        String color;
+        String snapshot;
+        Player opponent;
+        Player previous;
+        lock.lock();
+        try {
+            if (finished) return false;
+            if (token == whiteToken) {
+                color = "white";
+                previous = whitePlayer;
+                whitePlayer = player;
+                if (whiteGrace != null) whiteGrace.cancel();
+                opponent = blackPlayer;
+            } else if (token == blackToken) {
+                color = "black";
+                previous = blackPlayer;
+                blackPlayer = player;
+                if (blackGrace != null) blackGrace.cancel();
+                opponent = whitePlayer;
+            } else {
+                return false;
+            }
+            snapshot = snapshot(color);
+        } finally {
+            lock.unlock();
+        }
 
-        System.out.println(player.getName() + " is READY");
+        lastActivity = System.nanoTime();
+        player.setRoom(this);
+        Log.info("resumed", player.getName(), id,
+                previous instanceof VacantSeat ? color : color + ", replacing " + previous.getName());
+        player.sendMessage(snapshot);
+        opponent.sendMessage("OPPONENT_RESUMED");
+        return true;
+    }
 
-        if (whiteReady && blackReady) {
-            whitePlayer.sendMessage("TURN white");
-            blackPlayer.sendMessage("TURN white");
-            whiteReady = false;
-            blackReady = false;
+    // Describes the game for a resuming player: their color, the last move or "-", the position as FEN, then the clocks
+    // in a timed game.
+    private String snapshot(String color) {
+        StringBuilder text = new StringBuilder("SNAPSHOT ").append(color).append(' ');
+        if (lastMove == NO_MOVE) {
+            text.append('-');
+        } else {
+            text.append(Position.squareName(BinaryProtocol.moveFrom(lastMove)))
+                    .append(Position.squareName(BinaryProtocol.moveTo(lastMove)));
+            char promotion = BinaryProtocol.promotionLetter(BinaryProtocol.movePromotion(lastMove));
+            if (promotion != 0) text.append(promotion);
         }
+        text.append(' ');
+        Fen.write(board, text);
+        if (clock != null) text.append(' ').append(clock.text(System.nanoTime()));
+        return text.toString();
     }
 
-    // Forwards a move message from one player to the other.
-    public void forwardMove(ClientHandler from, String moveMessage) {
-        ClientHandler to = (from == whitePlayer) ? blackPlayer : whitePlayer;
-        to.sendMessage(moveMessage);
+    // Returns the position as FEN, for a bot reloading its board after the room rejected its move.
+    String fen() {
+        lock.lock();
+        try {
+            StringBuilder text = new StringBuilder();
+            Fen.write(board, text);
+            return text.toString();
+        } finally {
+            lock.unlock();
+        }
     }
 
-    private boolean hasNotified = false;
+    // Returns a fresh random seat token.
+    private static long newToken() {
+        long token;
+        do {
+            token = tokenSource.nextLong();
+        } while (token == 0);
+        return token;
+    }
+
+    // Formats a seat token as the 16 hex digits sent in START and expected in RESUME.
+    static String tokenText(long token) {
+        return String.format("%016x", token);
+    }
+
+    // Parses a seat token, returning 0 when the text is not one.
+    static long parseToken(String text) {
+        try {
+            return text.length() == 16 ? Long.parseUnsignedLong(text, 16) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Returns the seat tokens as white, black.
+    long[] tokens() {
+        return new long[]{whiteToken, blackToken};
+    }
 
     // Notifies the remaining player when their opponent disconnects.
-    public void notifyOpponentDisconnected(ClientHandler leaver) {
-        if (hasNotified) return;
-        hasNotified = true;
+    public void notifyOpponentDisconnected(Player leaver) {
+        if (!hasNotified.compareAndSet(false, true)) return;
 
-        ClientHandler remaining = (leaver == whitePlayer) ? blackPlayer : whitePlayer;
+        Player remaining = (leaver == whitePlayer) ? blackPlayer : whitePlayer;
         if (remaining != null) {
-            System.out.println("[INFO] " + leaver.getName() + " has disconnected. Notifying " + remaining.getName() + "...");
+            Log.info("opponent-left", leaver.getName(), id, null);
             remaining.sendMessage("OPPONENT_LEFT");
         }
+        close("GAME_OVER forfeit " + (remaining == whitePlayer ? "white" : "black"));
+    }
+
+    // Ends a game nobody has touched for the given time, telling both players; returns whether it was reaped.
+    public boolean reapIfIdle(long now, long idleNanos) {
+        if (now - lastActivity < idleNanos || !close("GAME_OVER abandoned")) return false;
+        Log.info("idle-closed", null, id, null);
+        whitePlayer.sendMessage("GAME_OVER abandoned");
+        blackPlayer.sendMessage("GAME_OVER abandoned");
+        return true;
+    }
+
+    // Replays journaled moves onto a fresh room's board without relaying them; returns false if the game cannot go on.
+    boolean replay(int[] moves) {
+        lock.lock();
+        try {
+            for (int packed : moves) {
+                String fromSquare = Position.squareName(BinaryProtocol.moveFrom(packed));
+                String toSquare = Position.squareName(BinaryProtocol.moveTo(packed));
+                int move = ruleEngine.findMove(fromSquare, toSquare, turn);
+                if (move == Move.NONE) return false;
+                int promotion = promotionFor(move, BinaryProtocol.movePromotion(packed));
+                applyMove(move, fromSquare, toSquare, turn, promotion);
+                ply++;
+                lastMove = BinaryProtocol.encodeMove(Move.from(move), Move.to(move), promotion);
+                turn = opposite(turn);
+            }
+            started = true;
+            return !ruleEngine.isCheckmate(turn) && !ruleEngine.isStalemate(turn);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Finishes the game and releases the room from the registry exactly once; returns false when already closed.
+    public boolean close() {
+        return close(null);
+    }
+
+    // Closes the room, sending the spectators the result first when there is one they have not seen.
+    private boolean close(String result) {
+        if (!closed.compareAndSet(false, true)) return false;
+        lock.lock();
+        try {
+            finished = true;
+            if (flagTimer != null) flagTimer.cancel();
+        } finally {
+            lock.unlock();
+        }
+        if (journal != null) journal.roomEnded(id);
+        releaseSpectators(result);
+        onClose.accept(this);
+        return true;
+    }
+
+    // Returns whether the room has been closed.
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    // Returns the room's id.
+    public long getId() {
+        return id;
     }
 }
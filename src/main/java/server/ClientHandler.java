@@ -2,70 +2,189 @@ package server;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import protocol.BinaryProtocol;
+
+/** Handles communication between the server and a single connected client, reading on its thread and writing on a second one. */
+public class ClientHandler implements Runnable, Player {
+    private static final int MAX_LINE = 4096;
 
-/** Handles communication between the server and a single connected client. */
-public class ClientHandler implements Runnable {
-    private static int userCount = 1;
     private final String name;
     private final Socket socket;
-    private final BufferedReader in;
-    private final PrintWriter out;
-    private ChessRoom room;
+    private final InputStream in;
+    private final OutputStream out;
+    private final WritableByteChannel sink;
+    private final OutboundQueue outbound = new OutboundQueue();
+    private volatile ChessRoom room;
+    private volatile Thread writer;
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+    private boolean binaryIn;
 
     // Initializes the client handler and assigns a unique username.
     public ClientHandler(Socket socket) throws IOException {
         this.socket = socket;
-        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        this.out = new PrintWriter(socket.getOutputStream(), true);
-        this.name = "USER" + userCount++;
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        this.sink = Channels.newChannel(out);
+        this.name = Protocol.nextUserName();
     }
 
     // Returns the client's name.
+    @Override
     public String getName() {
         return name;
     }
 
-    // Sends a message to the client.
+    // Queues a message for the client as a line or, after negotiation, as a frame.
+    @Override
     public void sendMessage(String msg) {
-        out.println(msg);
+        enqueue(OutboundMessage.text(msg));
+    }
+
+    // Queues a relayed move, written as a two-byte move frame once the client speaks binary.
+    @Override
+    public void sendMove(int move, String text) {
+        enqueue(new OutboundMessage(text, move));
+    }
+
+    // Queues a broadcast, sharing its encoded bytes with every other recipient.
+    @Override
+    public void sendBroadcast(Broadcast message) {
+        enqueue(OutboundMessage.shared(message));
+    }
+
+    // Queues a spectator's copy of a move, which the drop policy may discard when the client falls behind.
+    @Override
+    public void sendSpectatorMove(Broadcast message) {
+        enqueue(OutboundMessage.spectatorMove(message));
+    }
+
+    // Checks whether the connection is still open.
+    @Override
+    public boolean isConnected() {
+        return !closed;
     }
 
     // Sets the game room the client belongs to.
+    @Override
     public void setRoom(ChessRoom room) {
         this.room = room;
     }
 
+    // Hands a message to the writer thread so the caller never blocks on this client's socket.
+    private void enqueue(OutboundMessage message) {
+        if (closed) return;
+        if (!outbound.offer(message)) {
+            Log.warn("slow-consumer", name, null);
+            close();
+            return;
+        }
+        if (writerParked) LockSupport.unpark(writer);
+    }
+
+    // Switches input to frames now and output after the queued acknowledgement line.
+    private void acceptBinary() {
+        binaryIn = true;
+        enqueue(OutboundMessage.acceptBinary());
+    }
+
+    // Drains the outbound queue in batches, flushing once per batch, until the connection closes.
+    private void writeLoop() {
+        boolean binaryOut = false;
+        try {
+            while (!closed) {
+                OutboundMessage message = outbound.poll();
+                if (message == null) {
+                    writerParked = true;
+                    if (outbound.isEmpty() && !closed) LockSupport.park(this);
+                    writerParked = false;
+                    continue;
+                }
+                do {
+                    sink.write(message.encode(binaryOut));
+                    if (message.switchesToBinary()) binaryOut = true;
+                } while ((message = outbound.poll()) != null);
+                out.flush();
+            }
+        } catch (IOException e) {
+            close();
+        } finally {
+            outbound.clear();
+        }
+    }
+
+    // Closes the socket once, which ends the reader, and wakes the writer so it can stop.
+    private void close() {
+        if (closed) return;
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            socket.close();
+        } catch (IOException e) {
+            Log.warn("close-failed", name, e.getMessage());
+        }
+    }
+
     // Listens for messages from the client and processes them.
     @Override
     public void run() {
-        System.out.println("[INFO] " + name + " connected.");
-        ServerMain.joinLobby(this);
+        Thread.Builder threads = Thread.currentThread().isVirtual() ? Thread.ofVirtual() : Thread.ofPlatform();
+        writer = threads.name(name + "-writer").start(this::writeLoop);
+        Protocol.connected(this);
 
         try {
-            String line;
-            while ((line = in.readLine()) != null) {
-                System.out.println("[INFO] " + name + " says: " + line);
-
-                if (line.equals("READY") && room != null) {
-                    room.setReady(this);
-                } else if (line.startsWith("MOVE") && room != null) {
-                    room.forwardMove(this, line);
-                } else if (line.equals("EXIT")) {
-                    break;
+            while (true) {
+                if (binaryIn) {
+                    if (!readFrame()) break;
+                } else {
+                    String line = readLine();
+                    if (line == null) break;
+                    if (line.equals(BinaryProtocol.HELLO)) {
+                        acceptBinary();
+                    } else if (!Protocol.handleLine(this, room, line)) {
+                        break;
+                    }
                 }
             }
         } catch (IOException e) {
-            System.out.println("[INFO] " + name + " connection error: " + e.getMessage());
+            Log.info("connection-error", name, Log.NO_ROOM, e.getMessage());
         } finally {
-            System.out.println("[INFO] " + name + " has disconnected.");
-            try {
-                if (room != null) {
-                    room.notifyOpponentDisconnected(this);
-                }
-                socket.close();
-            } catch (IOException e) {
-                System.out.println("[INFO] Error closing socket for " + name + ": " + e.getMessage());
-            }
+            Protocol.disconnected(this, room);
+            close();
         }
     }
+
+    // Reads one newline-terminated line, dropping a trailing carriage return, or returns null at end of stream.
+    private String readLine() throws IOException {
+        byte[] line = new byte[64];
+        int length = 0;
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) return length == 0 ? null : new String(line, 0, length, StandardCharsets.UTF_8);
+            if (length == MAX_LINE) throw new IOException("line longer than " + MAX_LINE + " bytes");
+            if (length == line.length) line = Arrays.copyOf(line, line.length * 2);
+            line[length++] = (byte) b;
+        }
+        if (length > 0 && line[length - 1] == '\r') length--;
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Reads and dispatches one binary frame, returning false at end of stream or when the client leaves.
+    private boolean readFrame() throws IOException {
+        int high = in.read();
+        int low = in.read();
+        if (low < 0) return false;
+        int length = (high << 8) | low;
+        if (length == 0 || length > BinaryProtocol.MAX_FRAME) throw new IOException("bad frame length " + length);
+        byte[] frame = in.readNBytes(length);
+        if (frame.length < length) return false;
+        return Protocol.handleFrame(this, room, frame[0] & 0xFF, ByteBuffer.wrap(frame, 1, length - 1));
+    }
 }
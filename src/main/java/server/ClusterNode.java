@@ -0,0 +1,207 @@
+package server;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes players between server nodes over a broker. The lowest-numbered node runs the one matchmaker: the others
+ * queue their players there as stand-ins, and it hosts each pair on one of the two players' own nodes, so a relayed
+ * move crosses at most one broker hop. A player whose room lives on another node has its lines forwarded to that home
+ * node, where a RemotePlayer stands in for it, and the room's messages come back the same way.
+ */
+final class ClusterNode {
+    private final Broker broker;
+    private final int nodeId;
+    private final int lobbyNode;
+    // Players connected here who are queued on the lobby node or seated on another node, by name.
+    private final ConcurrentHashMap<String, Player> locals = new ConcurrentHashMap<>();
+    // The home node of each player connected here whose room lives elsewhere.
+    private final ConcurrentHashMap<Player, Integer> remoteSeats = new ConcurrentHashMap<>();
+    // Stand-ins for players connected elsewhere who are queued or seated here, by cluster-wide name.
+    private final ConcurrentHashMap<String, RemotePlayer> standIns = new ConcurrentHashMap<>();
+
+    // Creates the router for the broker's node, with matchmaking on the given lobby node.
+    ClusterNode(Broker broker, int lobbyNode) {
+        this.broker = broker;
+        this.nodeId = broker.nodeId();
+        this.lobbyNode = lobbyNode;
+    }
+
+    // Starts receiving envelopes from the other nodes.
+    void start() throws IOException {
+        broker.start(this::receive);
+    }
+
+    // Checks whether this node runs the matchmaker.
+    boolean isLobby() {
+        return nodeId == lobbyNode;
+    }
+
+    // Queues a player connected here on the lobby node; returns false when this is the lobby node, which queues itself.
+    boolean joinLobby(Player player) {
+        if (isLobby() || player instanceof RemotePlayer) return false;
+        locals.put(player.getName(), player);
+        send(lobbyNode, Envelope.JOIN, Log.NO_ROOM, player.getName(), "");
+        return true;
+    }
+
+    // Passes a rating on to the lobby node; returns false when this is the lobby node.
+    boolean rate(Player player, int rating) {
+        if (isLobby() || player instanceof RemotePlayer) return false;
+        send(lobbyNode, Envelope.RATE, Log.NO_ROOM, player.getName(), Integer.toString(rating));
+        return true;
+    }
+
+    // Takes a player connected here out of the lobby node's queue before it resumes or watches a game here; returns
+    // false when this is the lobby node. A match already under way sends SEATED, which is answered with LEAVE.
+    boolean withdraw(Player player) {
+        if (isLobby() || player instanceof RemotePlayer) return false;
+        locals.remove(player.getName(), player);
+        send(lobbyNode, Envelope.LEAVE, Log.NO_ROOM, player.getName(), "");
+        return true;
+    }
+
+    // Checks whether the player's room lives on another node.
+    boolean isSeatedElsewhere(Player player) {
+        return remoteSeats.containsKey(player);
+    }
+
+    // Forwards a line to the home node of the player's room; returns false when the room is not elsewhere.
+    boolean forward(Player player, String line) {
+        Integer home = line.equals("EXIT") ? remoteSeats.remove(player) : remoteSeats.get(player);
+        if (home == null) return false;
+        send(home, Envelope.INPUT, Log.NO_ROOM, player.getName(), line);
+        return true;
+    }
+
+    // Lets the node holding a departed player's seat or queue place know; returns false when that is this node.
+    boolean leave(Player player, ChessRoom room) {
+        locals.remove(player.getName(), player);
+        Integer home = remoteSeats.remove(player);
+        if (home != null) {
+            send(home, Envelope.LEAVE, Log.NO_ROOM, player.getName(), "");
+            return true;
+        }
+        if (room == null && !isLobby() && !(player instanceof RemotePlayer)) {
+            send(lobbyNode, Envelope.LEAVE, Log.NO_ROOM, player.getName(), "");
+            return true;
+        }
+        return false;
+    }
+
+    // Asks the node of one of the players to host their game; returns false when it is best hosted here, because one
+    // of them is connected here.
+    boolean hostElsewhere(Player white, Player black) {
+        int whiteNode = nodeOf(white);
+        int blackNode = nodeOf(black);
+        if (whiteNode == nodeId || blackNode == nodeId) return false;
+        standIns.remove(white.getName(), white);
+        standIns.remove(black.getName(), black);
+        send(whiteNode, Envelope.HOST, Log.NO_ROOM, "", whiteNode + " " + localName(white) + " " + blackNode + " "
+                + localName(black));
+        return true;
+    }
+
+    // Sends a line to a player connected to the given node.
+    void deliver(int node, String name, String text) {
+        send(node, Envelope.DELIVER, Log.NO_ROOM, name, text);
+    }
+
+    // Tells a player's node that its lines go to the room here, or nowhere when room is null.
+    void seat(int node, String name, ChessRoom room) {
+        send(node, Envelope.SEATED, room == null ? Log.NO_ROOM : room.getId(), name, "");
+    }
+
+    // Returns the number of players connected here whose room is elsewhere.
+    int remoteSeatCount() {
+        return remoteSeats.size();
+    }
+
+    // Returns the number of stand-ins for players connected elsewhere.
+    int standInCount() {
+        return standIns.size();
+    }
+
+    // Returns the broker, for its counters.
+    Broker broker() {
+        return broker;
+    }
+
+    // Handles one envelope on the broker's reader thread for the sending node.
+    private void receive(Envelope envelope) {
+        String key = RemotePlayer.key(envelope.from(), envelope.player());
+        switch (envelope.kind()) {
+            case Envelope.JOIN -> ServerMain.joinLobby(standIns.computeIfAbsent(key,
+                    ignored -> new RemotePlayer(this, envelope.from(), envelope.player())));
+            case Envelope.RATE -> {
+                RemotePlayer standIn = standIns.get(key);
+                if (standIn != null) ServerMain.setRating(standIn, Integer.parseInt(envelope.text()));
+            }
+            case Envelope.LEAVE -> {
+                RemotePlayer standIn = standIns.remove(key);
+                if (standIn != null) Protocol.release(standIn, standIn.room());
+            }
+            case Envelope.HOST -> host(envelope.text().split(" "));
+            case Envelope.SEATED -> seated(envelope);
+            case Envelope.INPUT -> {
+                RemotePlayer standIn = standIns.get(key);
+                if (standIn != null && !Protocol.handleLine(standIn, standIn.room(), envelope.text())) {
+                    standIns.remove(key, standIn);
+                }
+            }
+            case Envelope.DELIVER -> {
+                Player player = locals.get(envelope.player());
+                if (player != null) player.sendMessage(envelope.text());
+            }
+            default -> Log.warn("broker-unknown-kind", "node " + envelope.from() + " kind " + envelope.kind());
+        }
+    }
+
+    // Hosts the game the lobby node paired: "<white node> <white name> <black node> <black name>". A player connected
+    // here who left in the meantime gets an empty seat, which forfeits at once.
+    private void host(String[] parts) {
+        Player white = seatFor(Integer.parseInt(parts[0]), parts[1], "white");
+        Player black = seatFor(Integer.parseInt(parts[2]), parts[3], "black");
+        ChessRoom room = ServerMain.createRoom(white, black);
+        if (white instanceof VacantSeat) room.notifyOpponentDisconnected(white);
+        else if (black instanceof VacantSeat) room.notifyOpponentDisconnected(black);
+    }
+
+    // Returns the player to seat: the connection if it is here, a stand-in if it is elsewhere, or an empty seat.
+    private Player seatFor(int node, String name, String color) {
+        if (node != nodeId) {
+            return standIns.computeIfAbsent(RemotePlayer.key(node, name), key -> new RemotePlayer(this, node, name));
+        }
+        Player player = locals.get(name);
+        return player != null ? player : new VacantSeat(color);
+    }
+
+    // Records where a player connected here now sends its lines, or tells the home node the player is gone.
+    private void seated(Envelope envelope) {
+        Player player = locals.get(envelope.player());
+        if (player == null) {
+            send(envelope.from(), Envelope.LEAVE, Log.NO_ROOM, envelope.player(), "");
+        } else if (envelope.room() == Log.NO_ROOM) {
+            remoteSeats.remove(player, envelope.from());
+        } else {
+            remoteSeats.put(player, envelope.from());
+        }
+    }
+
+    // Returns the node a player is connected to.
+    private int nodeOf(Player player) {
+        return player instanceof RemotePlayer remote ? remote.node() : nodeId;
+    }
+
+    // Returns a player's name on its own node.
+    private static String localName(Player player) {
+        return player instanceof RemotePlayer remote ? remote.localName() : player.getName();
+    }
+
+    // Sends an envelope from this node, reporting an envelope that could not be queued.
+    private void send(int node, int kind, long room, String player, String text) {
+        if (!broker.send(node, new Envelope(kind, nodeId, room, player, text))) {
+            Log.warn("broker-dropped", player.isEmpty() ? null : player, "node " + node + " kind " + kind);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package server;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One message between server nodes: what it asks for, the node that sent it, the room and player it concerns, and a
+ * protocol line or other text. On the wire it is a big-endian u32 length followed by kind, node, room, a u16-prefixed
+ * player name and the text, both UTF-8.
+ */
+public record Envelope(int kind, int from, long room, String player, String text) {
+    // A player connected to the sending node joins the lobby node's queue.
+    public static final int JOIN = 1;
+    // A player in the lobby node's queue reports a rating.
+    public static final int RATE = 2;
+    // A player left: the receiving node drops its stand-in and holds or forfeits the seat.
+    public static final int LEAVE = 3;
+    // The lobby node asks the receiving node to host a game; the text names white and black as node and name.
+    public static final int HOST = 4;
+    // The room's home node tells the player's node where its moves go, or room NO_ROOM once they no longer do.
+    public static final int SEATED = 5;
+    // A line the player sent, forwarded to the room's home node.
+    public static final int INPUT = 6;
+    // A line for a player connected to the receiving node.
+    public static final int DELIVER = 7;
+
+    static final int LENGTH_BYTES = 4;
+    static final int MAX_BYTES = 64 * 1024;
+    private static final int FIXED_BYTES = 1 + 4 + 8 + 2;
+
+    // Returns the encoded size, length prefix included.
+    int encodedSize() {
+        return LENGTH_BYTES + FIXED_BYTES + utf8Length(player) + utf8Length(text);
+    }
+
+    // Writes the envelope, length prefix first, at the buffer's position.
+    void writeTo(ByteBuffer buffer) {
+        byte[] name = player.getBytes(StandardCharsets.UTF_8);
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(FIXED_BYTES + name.length + body.length).put((byte) kind).putInt(from).putLong(room)
+                .putShort((short) name.length).put(name).put(body);
+    }
+
+    // Reads one envelope, or returns null at a clean end of stream.
+    static Envelope readFrom(DataInputStream in) throws IOException {
+        int first = in.read();
+        if (first < 0) return null;
+        int length = (first << 24) | (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+        if (length < FIXED_BYTES || length > MAX_BYTES) throw new IOException("bad envelope length " + length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int kind = buffer.get();
+        int from = buffer.getInt();
+        long room = buffer.getLong();
+        int nameLength = buffer.getShort() & 0xFFFF;
+        if (nameLength > buffer.remaining()) throw new IOException("bad player name length " + nameLength);
+        String player = new String(bytes, buffer.position(), nameLength, StandardCharsets.UTF_8);
+        int textStart = buffer.position() + nameLength;
+        return new Envelope(kind, from, room, player, new String(bytes, textStart, length - textStart,
+                StandardCharsets.UTF_8));
+    }
+
+    // Returns the UTF-8 length of the text without encoding it when it is ASCII.
+    private static int utf8Length(String text) {
+        int length = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) return text.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return length;
+    }
+}
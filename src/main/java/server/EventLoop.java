@@ -0,0 +1,126 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/** Runs one selector on its own thread, serving the I/O and queued tasks of the connections assigned to it. */
+final class EventLoop implements Runnable {
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // Opens the selector and starts the loop thread.
+    EventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+        thread.start();
+    }
+
+    // Runs the task on the loop thread, waking the selector when called from another thread.
+    void execute(Runnable task) {
+        tasks.add(task);
+        if (Thread.currentThread() != thread) selector.wakeup();
+    }
+
+    // Runs a task for one connection on the loop thread, closing only that connection if the task fails.
+    void execute(NioConnection connection, Runnable task) {
+        execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                fail(connection, e);
+            }
+        });
+    }
+
+    // Hands a freshly accepted channel to this loop, which then owns all of its I/O.
+    void register(SocketChannel channel) {
+        execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                NioConnection connection = new NioConnection(this, channel);
+                connection.open(channel.register(selector, SelectionKey.OP_READ, connection));
+            } catch (IOException e) {
+                Log.warn("register-failed", e.getMessage());
+                closeQuietly(channel);
+            }
+        });
+    }
+
+    // Selects ready keys and runs queued tasks until the loop is shut down.
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                // Tasks queued by the loop itself come without a wakeup, so never block while any are pending.
+                if (tasks.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.selectNow();
+                }
+            } catch (IOException e) {
+                Log.warn("selector-failed", thread.getName() + ": " + e.getMessage());
+                break;
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                NioConnection connection = (NioConnection) key.attachment();
+                try {
+                    if (key.isValid() && key.isReadable()) connection.onReadable();
+                    if (key.isValid() && key.isWritable()) connection.onWritable();
+                } catch (RuntimeException e) {
+                    fail(connection, e);
+                }
+            }
+            runTasks();
+        }
+        closeQuietly(selector);
+    }
+
+    // Runs every task queued so far; a failing task is reported and the loop carries on with the rest.
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.log(LogLevel.ERROR, "task-failed", null, Log.NO_ROOM, Log.NO_OPCODE, e.toString());
+            }
+        }
+    }
+
+    // Reports a failure while serving a connection and closes it, so only that client goes through the disconnect
+    // path and every other connection on the loop keeps being served.
+    private void fail(NioConnection connection, RuntimeException e) {
+        Log.log(LogLevel.ERROR, "connection-failed", connection.getName(), Log.NO_ROOM, Log.NO_OPCODE, e.toString());
+        try {
+            connection.close();
+        } catch (RuntimeException again) {
+            Log.log(LogLevel.ERROR, "close-failed", connection.getName(), Log.NO_ROOM, Log.NO_OPCODE, again.toString());
+        }
+    }
+
+    // Stops the loop after its current iteration.
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    // Closes a resource, ignoring failures.
+    static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
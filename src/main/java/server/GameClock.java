@@ -0,0 +1,54 @@
+package server;
+
+import java.util.concurrent.TimeUnit;
+
+/** Both sides' remaining time under a time control, with at most one clock running; the room's lock guards it. */
+final class GameClock {
+    private final long incrementNanos;
+    private long whiteNanos;
+    private long blackNanos;
+    private String running;
+    private long runningSince;
+
+    // Gives both sides the base time, with neither clock running.
+    GameClock(TimeControl control) {
+        this.incrementNanos = control.incrementNanos();
+        this.whiteNanos = control.baseNanos();
+        this.blackNanos = control.baseNanos();
+    }
+
+    // Starts the color's clock at the given System.nanoTime value.
+    void start(String color, long now) {
+        running = color;
+        runningSince = now;
+    }
+
+    // Charges the mover for the time its clock ran, adds the increment and starts the opponent's clock.
+    void press(String mover, long now) {
+        long left = remainingNanos(mover, now) + incrementNanos;
+        if (mover.equals("white")) {
+            whiteNanos = left;
+            start("black", now);
+        } else {
+            blackNanos = left;
+            start("white", now);
+        }
+    }
+
+    // Returns the color's remaining time, counting down while its clock runs; zero or less means its flag has fallen.
+    long remainingNanos(String color, long now) {
+        long stored = color.equals("white") ? whiteNanos : blackNanos;
+        return color.equals(running) ? stored - (now - runningSince) : stored;
+    }
+
+    // Returns the color's remaining whole milliseconds, never below zero.
+    int remainingMillis(String color, long now) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(remainingNanos(color, now));
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, millis));
+    }
+
+    // Returns the clock suffix of TURN, MOVE and SNAPSHOT: "CLOCK <white ms> <black ms>".
+    String text(long now) {
+        return "CLOCK " + remainingMillis("white", now) + " " + remainingMillis("black", now);
+    }
+}
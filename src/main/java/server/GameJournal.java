@@ -0,0 +1,272 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only journal of game events in fixed-size memory-mapped segment files. Room threads only offer records to a
+ * lock-free ring; a single writer thread copies them into the mapped segment and forces each batch to disk in one
+ * call, so many moves share one sync (group commit) and no network thread ever waits on the disk: when the disk falls
+ * a whole ring behind, records are dropped rather than waited for. Segments older than the oldest unfinished game
+ * are deleted as the journal rolls over, and a writer that fails turns journaling off.
+ */
+public final class GameJournal implements AutoCloseable {
+    public static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+    private static final int RING_CAPACITY = 1 << 16;
+    private static final int MAX_BATCH = 4096;
+    private static final int PREALLOCATE_CHUNK = 1 << 20;
+    private static final long COMMIT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final MpscRingBuffer<JournalRecord> ring = new MpscRingBuffer<>(RING_CAPACITY);
+    private final List<RecoveredGame> recovered;
+    private final long maxRoomId;
+    private final Thread writer;
+    private volatile boolean writerParked;
+    private volatile boolean running = true;
+    private volatile boolean failed;
+
+    // The segment each unfinished game started in, by room id; only the writer touches it once it runs.
+    private final Map<Long, Long> startSegments;
+    private long oldestSegment;
+    private long segmentIndex;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int forcedPosition;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long written;
+    private volatile long forces;
+    private volatile long retired;
+
+    // Recovers the journal in the directory, reopens its tail for appending and starts the writer thread.
+    private GameJournal(Path directory, int segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes - segmentBytes % JournalRecord.BYTES;
+        Files.createDirectories(directory);
+
+        JournalReader.Recovery recovery = JournalReader.recover(directory);
+        this.recovered = recovery.games();
+        this.maxRoomId = recovery.maxRoomId();
+        this.startSegments = new HashMap<>(recovery.startSegments());
+        if (recovery.lastSegment() < 0) {
+            openSegment(0, 0);
+        } else {
+            oldestSegment = recovery.firstSegment();
+            openSegment(recovery.lastSegment(), recovery.endOffset());
+            retireSegments();
+        }
+
+        this.writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Opens or creates the journal in the directory with segments of the given size.
+    public static GameJournal open(Path directory, int segmentBytes) throws IOException {
+        return new GameJournal(directory, segmentBytes);
+    }
+
+    // Returns the games that had started but not ended when the journal was last written.
+    public List<RecoveredGame> recoveredGames() {
+        return recovered;
+    }
+
+    // Returns the largest room id found in the journal at startup, or 0 when it was empty.
+    public long maxRoomId() {
+        return maxRoomId;
+    }
+
+    // Records that a room has started, followed by the tokens of its white and black seats.
+    public void roomStarted(long roomId, long whiteToken, long blackToken) {
+        long now = System.currentTimeMillis();
+        append(new JournalRecord(JournalRecord.START, roomId, 0, 0, now, 0));
+        append(new JournalRecord(JournalRecord.SEAT, roomId, JournalRecord.WHITE_SEAT, 0, now, whiteToken));
+        append(new JournalRecord(JournalRecord.SEAT, roomId, JournalRecord.BLACK_SEAT, 0, now, blackToken));
+    }
+
+    // Records an accepted move as its packed binary form together with its ply in the room.
+    public void moveAccepted(long roomId, int ply, int move) {
+        append(new JournalRecord(JournalRecord.MOVE, roomId, ply, move, System.currentTimeMillis(), 0));
+    }
+
+    // Records that a room has ended.
+    public void roomEnded(long roomId) {
+        append(new JournalRecord(JournalRecord.END, roomId, 0, 0, System.currentTimeMillis(), 0));
+    }
+
+    // Hands a record to the writer without ever waiting: callers hold room locks on network threads, so when the disk
+    // has fallen a whole ring behind, or the writer has failed, the record is dropped and counted instead. Recovery
+    // stops a game's moves at the first ply missing from disk, so a dropped move costs resumability, never correctness.
+    private void append(JournalRecord record) {
+        if (failed || !ring.offer(record)) {
+            dropped.increment();
+            if (!failed) LockSupport.unpark(writer);
+            return;
+        }
+        appended.increment();
+        if (writerParked) LockSupport.unpark(writer);
+    }
+
+    // Copies records into the mapped segment and forces each batch once the ring runs dry or the interval passes.
+    private void writeLoop() {
+        try {
+            long lastForce = System.nanoTime();
+            while (running || !ring.isEmpty()) {
+                int batch = 0;
+                for (JournalRecord record; batch < MAX_BATCH && (record = ring.poll()) != null; batch++) {
+                    write(record);
+                }
+                if (batch == MAX_BATCH && System.nanoTime() - lastForce < COMMIT_INTERVAL_NANOS) continue;
+
+                if (segment.position() > forcedPosition) {
+                    force();
+                    lastForce = System.nanoTime();
+                }
+                if (ring.isEmpty() && running) {
+                    writerParked = true;
+                    if (ring.isEmpty() && running) LockSupport.park(this);
+                    writerParked = false;
+                }
+            }
+            force();
+        } catch (Throwable e) {
+            // Errors too: a write into a mapped page the disk cannot back arrives as an InternalError, not an exception.
+            fail(e);
+        }
+    }
+
+    // Turns journaling off after the writer could not map, write or force a segment, for example on a full disk; what
+    // is already queued is dropped and counted with everything appended later.
+    private void fail(Throwable e) {
+        failed = true;
+        Log.log(LogLevel.ERROR, "journal-failed", null, Log.NO_ROOM, Log.NO_OPCODE, e.toString());
+        while (ring.poll() != null) dropped.increment();
+    }
+
+    // Writes one record at the end of the segment, rolling over to a new segment when it is full.
+    private void write(JournalRecord record) {
+        if (segment.remaining() < JournalRecord.BYTES) {
+            force();
+            openSegment(segmentIndex + 1, 0);
+            retireSegments();
+        }
+        int offset = segment.position();
+        record.writeTo(segment, offset);
+        segment.position(offset + JournalRecord.BYTES);
+        written++;
+        if (record.kind() == JournalRecord.START) startSegments.put(record.roomId(), segmentIndex);
+        if (record.kind() == JournalRecord.END) startSegments.remove(record.roomId());
+    }
+
+    // Deletes the segments before the one the oldest unfinished game started in, since recovery needs none of their
+    // records. The segment before the current one is always kept, so the largest room id survives a restart.
+    private void retireSegments() {
+        long keep = segmentIndex - 1;
+        for (long start : startSegments.values()) keep = Math.min(keep, start);
+        for (; oldestSegment < keep; oldestSegment++) {
+            try {
+                if (Files.deleteIfExists(JournalReader.segmentPath(directory, oldestSegment))) retired++;
+            } catch (IOException e) {
+                Log.warn("journal-retire-failed", "segment " + oldestSegment + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Flushes the bytes written since the last force to the device.
+    private void force() {
+        int length = segment.position() - forcedPosition;
+        if (length <= 0) return;
+        segment.force(forcedPosition, length);
+        forcedPosition = segment.position();
+        forces++;
+    }
+
+    // Maps the numbered segment, creating it at full size when it does not exist, and positions it for appending.
+    private void openSegment(long index, int offset) {
+        try {
+            if (channel != null) channel.close();
+            channel = FileChannel.open(JournalReader.segmentPath(directory, index), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = channel.size();
+            if (size < segmentBytes) preallocate(channel, size);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentBytes, size));
+            segment.position(offset);
+            segmentIndex = index;
+            forcedPosition = offset;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open journal segment " + index + " in " + directory, e);
+        }
+    }
+
+    // Writes zeros from the given size to the full segment size, so a full disk fails here with an IOException rather
+    // than later as a fault on a sparse page of the mapping.
+    private void preallocate(FileChannel file, long from) throws IOException {
+        ByteBuffer zeros = ByteBuffer.allocate(PREALLOCATE_CHUNK);
+        for (long position = from; position < segmentBytes; ) {
+            zeros.clear().limit((int) Math.min(PREALLOCATE_CHUNK, segmentBytes - position));
+            while (zeros.hasRemaining()) position += file.write(zeros, position);
+        }
+    }
+
+    // Stops the writer once it has drained and forced every queued record, then closes the segment.
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            Log.warn("journal-close-failed", e.getMessage());
+        }
+    }
+
+    // Returns the number of records handed to the journal.
+    public long appendedCount() {
+        return appended.sum();
+    }
+
+    // Returns the number of records copied into a segment.
+    public long writtenCount() {
+        return written;
+    }
+
+    // Returns the number of batches forced to disk.
+    public long forceCount() {
+        return forces;
+    }
+
+    // Returns the number of records dropped because the ring was full or the writer had failed.
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    // Returns the number of segment files deleted because every game in them had ended.
+    public long retiredCount() {
+        return retired;
+    }
+
+    // Returns a one-line summary of the journal's throughput counters.
+    public String summary() {
+        long forceCount = forces;
+        return "appended " + appended.sum() + ", written " + written + ", forces " + forceCount + " (avg batch "
+                + (forceCount == 0 ? 0 : written / forceCount) + "), dropped "
+                + dropped.sum() + ", segment " + segmentIndex + ", retired " + retired;
+    }
+}
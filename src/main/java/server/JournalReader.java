@@ -0,0 +1,164 @@
+package server;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import protocol.BinaryProtocol;
+
+/** Scans journal segments in order to recover unfinished games or to print a game's history. */
+public final class JournalReader {
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".seg";
+    private static final int PRESENT = 1 << 16;
+
+    private JournalReader() {
+    }
+
+    /**
+     * What a scan found: the unfinished games, the largest room id, where appending should resume, the oldest segment
+     * and the segment each unfinished game started in.
+     */
+    record Recovery(List<RecoveredGame> games, long maxRoomId, long lastSegment, int endOffset, long firstSegment,
+                    Map<Long, Long> startSegments) {
+    }
+
+    // Returns the path of the numbered segment.
+    static Path segmentPath(Path directory, long index) {
+        return directory.resolve(String.format("%s%08d%s", PREFIX, index, SUFFIX));
+    }
+
+    // Reads every segment and rebuilds the games that have a START but no END, in order of their start.
+    static Recovery recover(Path directory) throws IOException {
+        Map<Long, GameMoves> open = new LinkedHashMap<>();
+        long[] maxRoomId = {0};
+        long[] position = {-1, 0, -1};
+        scan(directory, (index, offset, record) -> {
+            position[1] = offset + JournalRecord.BYTES;
+            maxRoomId[0] = Math.max(maxRoomId[0], record.roomId());
+            switch (record.kind()) {
+                case JournalRecord.START -> open.put(record.roomId(), new GameMoves(record.timestamp(), index));
+                case JournalRecord.MOVE -> {
+                    GameMoves game = open.get(record.roomId());
+                    if (game != null) game.put(record.ply(), record.move());
+                }
+                case JournalRecord.SEAT -> {
+                    GameMoves game = open.get(record.roomId());
+                    if (game != null && record.ply() == JournalRecord.WHITE_SEAT) game.whiteToken = record.spare();
+                    if (game != null && record.ply() == JournalRecord.BLACK_SEAT) game.blackToken = record.spare();
+                }
+                case JournalRecord.END -> open.remove(record.roomId());
+                default -> {
+                }
+            }
+        }, index -> {
+            if (position[2] < 0) position[2] = index;
+            position[0] = index;
+            position[1] = 0;
+        });
+
+        List<RecoveredGame> games = new ArrayList<>(open.size());
+        Map<Long, Long> startSegments = new HashMap<>();
+        open.forEach((roomId, game) -> {
+            games.add(new RecoveredGame(roomId, game.startedAt, game.whiteToken, game.blackToken, game.moves()));
+            startSegments.put(roomId, game.segment);
+        });
+        return new Recovery(games, maxRoomId[0], position[0], (int) position[1], position[2], startSegments);
+    }
+
+    /** Receives each valid record with the segment and offset it was read from. */
+    private interface RecordVisitor {
+        void visit(long segment, int offset, JournalRecord record);
+    }
+
+    // Visits the records of every segment in order, stopping within a segment at its end or at a torn record.
+    private static void scan(Path directory, RecordVisitor visitor, Consumer<Long> segmentOpened) throws IOException {
+        if (!Files.isDirectory(directory)) return;
+        List<Long> indexes = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .forEach(name -> indexes.add(Long.parseLong(name.substring(PREFIX.length(),
+                            name.length() - SUFFIX.length()))));
+        }
+        indexes.sort(null);
+
+        for (long index : indexes) {
+            segmentOpened.accept(index);
+            try (FileChannel channel = FileChannel.open(segmentPath(directory, index), StandardOpenOption.READ)) {
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                for (int offset = 0; offset + JournalRecord.BYTES <= segment.limit(); offset += JournalRecord.BYTES) {
+                    JournalRecord record = JournalRecord.readFrom(segment, offset);
+                    if (record == null) break;
+                    visitor.visit(index, offset, record);
+                }
+            }
+        }
+    }
+
+    // Prints the journal as text, optionally only one room: <directory> [roomId].
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "journal");
+        long room = args.length > 1 ? Long.parseLong(args[1]) : -1;
+        scan(directory, (index, offset, record) -> {
+            if (room >= 0 && record.roomId() != room) return;
+            String event = switch (record.kind()) {
+                case JournalRecord.START -> "START";
+                case JournalRecord.SEAT -> record.ply() == JournalRecord.WHITE_SEAT ? "SEAT white" : "SEAT black";
+                case JournalRecord.MOVE -> "ply " + record.ply() + " " + BinaryProtocol.moveText(record.move());
+                default -> "END";
+            };
+            System.out.println(Instant.ofEpochMilli(record.timestamp()) + " room " + record.roomId() + " " + event);
+        }, index -> { });
+        for (RecoveredGame game : recover(directory).games()) {
+            if (room < 0 || game.roomId() == room) {
+                System.out.println("Unfinished: room " + game.roomId() + " after " + game.moves().length + " plies");
+            }
+        }
+    }
+
+    /** The seat tokens and the moves of one game indexed by ply, kept until the game's END record arrives. */
+    private static final class GameMoves {
+        final long startedAt;
+        final long segment;
+        long whiteToken;
+        long blackToken;
+        int[] byPly = new int[64];
+        int highestPly;
+
+        GameMoves(long startedAt, long segment) {
+            this.startedAt = startedAt;
+            this.segment = segment;
+        }
+
+        // Stores the move played at the 1-based ply.
+        void put(int ply, int move) {
+            if (ply < 1) return;
+            if (ply > byPly.length) byPly = Arrays.copyOf(byPly, Math.max(ply, byPly.length * 2));
+            byPly[ply - 1] = move | PRESENT;
+            highestPly = Math.max(highestPly, ply);
+        }
+
+        // Returns the moves in ply order, stopping at the first ply that never made it to disk.
+        int[] moves() {
+            int count = 0;
+            while (count < highestPly && (byPly[count] & PRESENT) != 0) count++;
+            int[] moves = new int[count];
+            for (int i = 0; i < count; i++) moves[i] = byPly[i] & ~PRESENT;
+            return moves;
+        }
+    }
+}
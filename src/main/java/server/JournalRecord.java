@@ -0,0 +1,50 @@
+package server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One fixed-size journal entry. Layout: kind (1 byte), check (1), packed move (2), ply (4), room id (8),
+ * epoch millis (8), spare (8). SEAT records put the seat in the ply field and its resume token in the spare.
+ * The kind byte is written last and a zero kind marks the end of the data, so a record torn by a crash
+ * fails its check byte and recovery stops just before it.
+ */
+record JournalRecord(int kind, long roomId, int ply, int move, long timestamp, long spare) {
+    static final int BYTES = 32;
+    static final int START = 1;
+    static final int MOVE = 2;
+    static final int END = 3;
+    static final int SEAT = 4;
+    static final int WHITE_SEAT = 0;
+    static final int BLACK_SEAT = 1;
+
+    // Stores the record at the offset, publishing the kind byte after everything else.
+    void writeTo(ByteBuffer buffer, int offset) {
+        buffer.put(offset + 1, check());
+        buffer.putShort(offset + 2, (short) move);
+        buffer.putInt(offset + 4, ply);
+        buffer.putLong(offset + 8, roomId);
+        buffer.putLong(offset + 16, timestamp);
+        buffer.putLong(offset + 24, spare);
+        buffer.put(offset, (byte) kind);
+    }
+
+    // Reads the record at the offset, or returns null at the end of the data or at a torn record.
+    static JournalRecord readFrom(ByteBuffer buffer, int offset) {
+        int kind = buffer.get(offset);
+        if (kind < START || kind > SEAT) return null;
+        JournalRecord record = new JournalRecord(kind, buffer.getLong(offset + 8), buffer.getInt(offset + 4),
+                buffer.getShort(offset + 2) & 0xFFFF, buffer.getLong(offset + 16), buffer.getLong(offset + 24));
+        return record.check() == buffer.get(offset + 1) ? record : null;
+    }
+
+    // Folds every field into one byte.
+    private byte check() {
+        long h = kind * 0x9E3779B97F4A7C15L ^ roomId;
+        h = h * 0xBF58476D1CE4E5B9L ^ ((long) ply << 16 | move);
+        h = h * 0x94D049BB133111EBL ^ timestamp;
+        h = h * 0x9E3779B97F4A7C15L ^ spare;
+        h ^= h >>> 32;
+        h ^= h >>> 16;
+        return (byte) (h ^ (h >>> 8));
+    }
+}
@@ -0,0 +1,182 @@
+package server;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous server log. Callers check the level, then hand the raw fields to a lock-free ring without formatting
+ * anything; one background thread formats each drained batch and writes it with a single flush. When the ring is full
+ * the event is dropped and counted, so logging never blocks a connection.
+ */
+public final class Log {
+    public static final long NO_ROOM = 0;
+    public static final int NO_OPCODE = -1;
+    private static final int RING_CAPACITY = 1 << 14;
+    private static final int MAX_BATCH = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final int OUTPUT_BUFFER_BYTES = 64 * 1024;
+
+    private static final MpscRingBuffer<Event> ring = new MpscRingBuffer<>(RING_CAPACITY);
+    private static final LongAdder dropped = new LongAdder();
+    private static final LongAdder written = new LongAdder();
+    private static volatile int threshold = LogLevel.INFO.ordinal();
+    private static volatile OutputStream output = standardOutput();
+    private static volatile boolean running = true;
+    private static final Thread writer = startWriter();
+
+    private Log() {
+    }
+
+    // Sets the lowest level that is recorded and where lines go: a file appended to, or standard output when null.
+    public static void configure(LogLevel level, Path file) throws IOException {
+        threshold = level.ordinal();
+        if (file != null) {
+            output = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND), OUTPUT_BUFFER_BYTES);
+        }
+    }
+
+    // Checks whether events at the level are recorded; callers that must build a string first should ask this.
+    public static boolean enabled(LogLevel level) {
+        return level.ordinal() >= threshold;
+    }
+
+    // Records an event with every structured field; absent fields are null, NO_ROOM or NO_OPCODE.
+    public static void log(LogLevel level, String event, String user, long room, int opcode, String text) {
+        if (level.ordinal() < threshold) return;
+        if (!ring.offer(new Event(System.currentTimeMillis(), level, event, user, room, opcode, text))) {
+            dropped.increment();
+        }
+    }
+
+    // Records per-message traffic.
+    public static void debug(String event, String user, long room, int opcode, String text) {
+        log(LogLevel.DEBUG, event, user, room, opcode, text);
+    }
+
+    // Records a lifecycle event concerning a user and, when known, a room.
+    public static void info(String event, String user, long room, String text) {
+        log(LogLevel.INFO, event, user, room, NO_OPCODE, text);
+    }
+
+    // Records a server-wide lifecycle event.
+    public static void info(String event, String text) {
+        log(LogLevel.INFO, event, null, NO_ROOM, NO_OPCODE, text);
+    }
+
+    // Records a recoverable failure concerning a user.
+    public static void warn(String event, String user, String text) {
+        log(LogLevel.WARN, event, user, NO_ROOM, NO_OPCODE, text);
+    }
+
+    // Records a server-wide recoverable failure.
+    public static void warn(String event, String text) {
+        log(LogLevel.WARN, event, null, NO_ROOM, NO_OPCODE, text);
+    }
+
+    // Returns the number of events discarded because the ring was full.
+    public static long droppedCount() {
+        return dropped.sum();
+    }
+
+    // Returns the number of events written out.
+    public static long writtenCount() {
+        return written.sum();
+    }
+
+    // Starts the daemon writer and a shutdown hook that lets it drain what is already queued.
+    private static Thread startWriter() {
+        Thread thread = new Thread(Log::writeLoop, "log-writer");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "log-flush"));
+        return thread;
+    }
+
+    // Formats and writes events a batch at a time, flushing once per batch, and naps briefly when there are none.
+    private static void writeLoop() {
+        StringBuilder line = new StringBuilder(256);
+        TimestampCache timestamps = new TimestampCache();
+        while (running || !ring.isEmpty()) {
+            OutputStream out = output;
+            int batch = 0;
+            try {
+                for (Event event; batch < MAX_BATCH && (event = ring.poll()) != null; batch++) {
+                    line.setLength(0);
+                    event.format(line, timestamps);
+                    out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+                }
+                if (batch > 0) out.flush();
+            } catch (IOException e) {
+                // Nowhere left to report it; keep draining so producers are never held up.
+                dropped.add(batch);
+                batch = 0;
+            }
+            written.add(batch);
+            if (batch == 0 && running) LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    // Returns a buffered stream over the process's standard output that the writer alone flushes.
+    private static OutputStream standardOutput() {
+        return new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER_BYTES);
+    }
+
+    /** The raw fields of one event, formatted only on the writer thread. */
+    private record Event(long millis, LogLevel level, String event, String user, long room, int opcode, String text) {
+        // Appends the event as one line: timestamp, level, event name, the fields present, then the quoted text.
+        void format(StringBuilder line, TimestampCache timestamps) {
+            line.append(timestamps.format(millis)).append(' ').append(level).append(' ').append(event);
+            if (user != null) line.append(" user=").append(user);
+            if (room != NO_ROOM) line.append(" room=").append(room);
+            if (opcode != NO_OPCODE) line.append(" opcode=").append(opcode);
+            if (text != null) {
+                line.append(" text=\"");
+                for (int i = 0; i < text.length(); i++) {
+                    char c = text.charAt(i);
+                    if (c == '"' || c == '\\') line.append('\\');
+                    line.append(c == '\n' ? ' ' : c);
+                }
+                line.append('"');
+            }
+            line.append('\n');
+        }
+    }
+
+    /** Formats timestamps, reusing the text up to the second while events keep arriving within it. */
+    private static final class TimestampCache {
+        private long second = -1;
+        private String prefix;
+
+        // Returns the ISO-8601 UTC form of the epoch milliseconds.
+        String format(long millis) {
+            long current = millis / 1000;
+            if (current != second) {
+                second = current;
+                String full = Instant.ofEpochSecond(current).toString();
+                prefix = full.substring(0, full.length() - 1);
+            }
+            return prefix + '.' + (char) ('0' + millis % 1000 / 100) + (char) ('0' + millis % 100 / 10)
+                    + (char) ('0' + millis % 10) + 'Z';
+        }
+    }
+}
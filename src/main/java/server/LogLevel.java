@@ -0,0 +1,13 @@
+package server;
+
+/** How important a log event is; events below the configured level are discarded before anything is formatted. */
+public enum LogLevel {
+    // Per-message traffic such as every line a client sends.
+    DEBUG,
+    // Connections, games and other lifecycle events.
+    INFO,
+    // Recoverable failures such as a client that stopped reading.
+    WARN,
+    // Failures the server cannot work around.
+    ERROR
+}
@@ -0,0 +1,221 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import metrics.LatencyRecorder;
+
+/** Pairs waiting players by rating on a periodic tick, widening each player's acceptable rating gap the longer they wait. */
+public final class Matchmaker {
+    public static final int DEFAULT_RATING = 1200;
+    public static final int MAX_RATING = 3999;
+    static final int BUCKET_WIDTH = 100;
+    static final int BUCKETS = MAX_RATING / BUCKET_WIDTH + 1;
+    private static final int BASE_WINDOW = 50;
+    private static final int WIDEN_PER_SECOND = 50;
+    private static final int MAX_WINDOW = 600;
+
+    private static final int WAITING = 0;
+    private static final int CLAIMING = 1;
+    private static final int MATCHED = 2;
+    private static final int CANCELLED = 3;
+
+    private static final Comparator<Ticket> BY_RATING = Comparator.comparingInt(ticket -> ticket.rating);
+
+    private final List<ConcurrentLinkedQueue<Ticket>> arrivals = new ArrayList<>(BUCKETS);
+    private final List<ArrayList<Ticket>> waiting = new ArrayList<>(BUCKETS);
+    private final ConcurrentHashMap<Player, Ticket> tickets = new ConcurrentHashMap<>();
+    private final BiConsumer<Player, Player> onMatch;
+    private final Consumer<Player> onExpire;
+    private final long expireAfterNanos;
+    private final LatencyRecorder timeToMatch = new LatencyRecorder();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    // Creates a matchmaker that hands pairs to onMatch and gives up on a player after the expiry, handing them to onExpire.
+    public Matchmaker(BiConsumer<Player, Player> onMatch, Consumer<Player> onExpire, long expireAfter, TimeUnit unit) {
+        this.onMatch = onMatch;
+        this.onExpire = onExpire;
+        this.expireAfterNanos = unit.toNanos(expireAfter);
+        for (int i = 0; i < BUCKETS; i++) {
+            arrivals.add(new ConcurrentLinkedQueue<>());
+            waiting.add(new ArrayList<>());
+        }
+    }
+
+    // Queues a player at the given rating; safe to call from any thread, the pairing happens on the next tick.
+    public void enqueue(Player player, int rating) {
+        enqueue(player, rating, System.nanoTime());
+    }
+
+    // Queues a player as of the given System.nanoTime value, for callers that drive the clock themselves.
+    public void enqueue(Player player, int rating, long now) {
+        submit(new Ticket(player, rating, now));
+    }
+
+    // Moves a waiting player to a new rating while keeping their place in time; returns false when they are no longer waiting.
+    public boolean rerate(Player player, int rating) {
+        Ticket old = tickets.get(player);
+        if (old == null || !old.cancel()) return false;
+        submit(new Ticket(player, rating, old.enqueuedAt));
+        return true;
+    }
+
+    // Withdraws a waiting player; returns false when the player was already matched or never queued.
+    public boolean cancel(Player player) {
+        Ticket ticket = tickets.remove(player);
+        return ticket != null && ticket.cancel();
+    }
+
+    // Registers the ticket and hands it to its rating bucket's arrival queue.
+    private void submit(Ticket ticket) {
+        tickets.put(ticket.player, ticket);
+        arrivals.get(bucketOf(ticket.rating)).add(ticket);
+    }
+
+    // Runs one pairing pass at the current time.
+    public void tick() {
+        tick(System.nanoTime());
+    }
+
+    // Runs one pairing pass as of the given System.nanoTime value; ticks must not overlap.
+    public void tick(long now) {
+        List<Ticket> pairs = new ArrayList<>();
+        List<Ticket> expiring = new ArrayList<>();
+        Ticket previous = null;
+
+        for (int b = 0; b < BUCKETS; b++) {
+            ArrayList<Ticket> bucket = waiting.get(b);
+            ConcurrentLinkedQueue<Ticket> incoming = arrivals.get(b);
+            for (Ticket ticket; (ticket = incoming.poll()) != null; ) bucket.add(ticket);
+            bucket.sort(BY_RATING);
+
+            // Sweep in rating order and pair neighbours whose gap fits the longer-waiting player's window.
+            for (Ticket ticket : bucket) {
+                if (ticket.state.get() != WAITING) continue;
+                if (previous != null && previous.state.get() == WAITING
+                        && ticket.rating - previous.rating <= Math.max(window(previous, now), window(ticket, now))
+                        && claim(previous, ticket)) {
+                    pairs.add(previous);
+                    pairs.add(ticket);
+                    previous = null;
+                } else if (ticket.state.get() == WAITING) {
+                    previous = ticket;
+                }
+            }
+        }
+
+        // Players nobody fit by now are handed on; everything no longer waiting leaves the buckets.
+        for (ArrayList<Ticket> bucket : waiting) {
+            for (Ticket ticket : bucket) {
+                if (now - ticket.enqueuedAt >= expireAfterNanos && ticket.state.compareAndSet(WAITING, MATCHED)) {
+                    expiring.add(ticket);
+                }
+            }
+            bucket.removeIf(ticket -> ticket.state.get() != WAITING);
+        }
+
+        for (int i = 0; i < pairs.size(); i += 2) {
+            Ticket first = pairs.get(i);
+            Ticket second = pairs.get(i + 1);
+            boolean firstWaitedLonger = first.enqueuedAt <= second.enqueuedAt;
+            Ticket white = firstWaitedLonger ? first : second;
+            Ticket black = firstWaitedLonger ? second : first;
+            retire(white, now);
+            retire(black, now);
+            matches.increment();
+            onMatch.accept(white.player, black.player);
+        }
+        for (Ticket ticket : expiring) {
+            tickets.remove(ticket.player, ticket);
+            expired.increment();
+            onExpire.accept(ticket.player);
+        }
+    }
+
+    // Marks both tickets matched, or neither when one of them was cancelled concurrently.
+    private static boolean claim(Ticket first, Ticket second) {
+        if (!first.state.compareAndSet(WAITING, CLAIMING)) return false;
+        if (!second.state.compareAndSet(WAITING, MATCHED)) {
+            first.state.set(WAITING);
+            return false;
+        }
+        first.state.set(MATCHED);
+        return true;
+    }
+
+    // Drops a matched ticket from the index and records how long its player waited.
+    private void retire(Ticket ticket, long now) {
+        tickets.remove(ticket.player, ticket);
+        timeToMatch.record(now - ticket.enqueuedAt);
+    }
+
+    // Returns the rating gap the ticket accepts after waiting until now.
+    private static int window(Ticket ticket, long now) {
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(now - ticket.enqueuedAt);
+        return (int) Math.min(MAX_WINDOW, BASE_WINDOW + waitedMillis * WIDEN_PER_SECOND / 1000);
+    }
+
+    // Maps a rating to its bucket, clamping out-of-range ratings to the ends.
+    static int bucketOf(int rating) {
+        return Math.max(0, Math.min(BUCKETS - 1, rating / BUCKET_WIDTH));
+    }
+
+    // Returns the number of players currently waiting.
+    public int waitingCount() {
+        return tickets.size();
+    }
+
+    // Returns the number of pairs made so far.
+    public long matchCount() {
+        return matches.sum();
+    }
+
+    // Returns the number of players who waited past the expiry.
+    public long expiredCount() {
+        return expired.sum();
+    }
+
+    // Returns the histogram of time from enqueue to match.
+    public LatencyRecorder timeToMatch() {
+        return timeToMatch;
+    }
+
+    // Returns a one-line summary of the queue and the time-to-match percentiles.
+    public String summary() {
+        return "waiting " + waitingCount() + ", matched " + matchCount() + " pairs, expired " + expiredCount()
+                + ", time to match " + timeToMatch.summary();
+    }
+
+    /** A player's place in the queue; its state moves from waiting to matched or cancelled exactly once. */
+    private static final class Ticket {
+        final Player player;
+        final int rating;
+        final long enqueuedAt;
+        final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Ticket(Player player, int rating, long enqueuedAt) {
+            this.player = player;
+            this.rating = Math.max(0, Math.min(MAX_RATING, rating));
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        // Withdraws the ticket, waiting out a pairing attempt that is in progress on the tick thread.
+        boolean cancel() {
+            while (true) {
+                int current = state.get();
+                if (current == WAITING && state.compareAndSet(WAITING, CANCELLED)) return true;
+                if (current == MATCHED || current == CANCELLED) return false;
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/** Serves GET /metrics from the JDK's built-in HTTP server on one daemon thread, rendering only when scraped. */
+public final class MetricsEndpoint {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+
+    // Binds the endpoint to the address; the body is produced fresh for every scrape.
+    public MetricsEndpoint(InetSocketAddress address, Supplier<String> body) throws IOException {
+        server = HttpServer.create(address, 0);
+        server.createContext("/metrics", exchange -> respond(exchange, body));
+        server.setExecutor(Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    // Starts answering scrapes.
+    public void start() {
+        server.start();
+    }
+
+    // Stops the server without waiting for scrapes in progress.
+    public void stop() {
+        server.stop(0);
+    }
+
+    // Answers a GET with the rendered metrics and anything else with 405.
+    private static void respond(HttpExchange exchange, Supplier<String> body) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] bytes = body.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
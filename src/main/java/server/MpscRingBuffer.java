@@ -0,0 +1,72 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer, backed by a power-of-two ring.
+ * Each slot carries a sequence number: producers claim a slot by advancing the tail with one CAS and publish
+ * it by bumping the slot's sequence, so the consumer never waits on a lock and never sees a half-written slot.
+ */
+public final class MpscRingBuffer<E> {
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    // Creates a ring holding at least the given number of elements, rounded up to a power of two.
+    public MpscRingBuffer(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+    }
+
+    // Adds an element from any thread, returning false when the ring is full.
+    public boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                return false;
+            }
+        }
+    }
+
+    // Removes the oldest element, or returns null when none is published yet; only the consumer thread may call it.
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head.get();
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) return null;
+        E element = (E) elements[index];
+        elements[index] = null;
+        sequences.set(index, position + elements.length);
+        head.lazySet(position + 1);
+        return element;
+    }
+
+    // Returns the number of claimed slots not yet consumed, from any thread.
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    // Checks whether the ring currently holds nothing.
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // Returns the number of slots.
+    public int capacity() {
+        return elements.length;
+    }
+}
@@ -0,0 +1,238 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import protocol.BinaryProtocol;
+
+/** A client served by an event loop: frames lines or binary frames out of its read buffer and batches its writes. */
+final class NioConnection implements Player {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final EventLoop loop;
+    private final SocketChannel channel;
+    private final String name = Protocol.nextUserName();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final OutboundQueue outbound = new OutboundQueue();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private SelectionKey key;
+    private ByteBuffer partial;
+    private volatile ChessRoom room;
+    private volatile boolean closed;
+    private boolean binaryIn;
+    private boolean binaryOut;
+
+    // Wraps a non-blocking channel owned by the given loop.
+    NioConnection(EventLoop loop, SocketChannel channel) {
+        this.loop = loop;
+        this.channel = channel;
+    }
+
+    // Completes registration and puts the client in the lobby.
+    void open(SelectionKey key) {
+        this.key = key;
+        Protocol.connected(this);
+    }
+
+    // Returns the client's name.
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    // Queues a line for the client from any thread; the loop encodes and writes it without blocking the caller.
+    @Override
+    public void sendMessage(String msg) {
+        enqueue(OutboundMessage.text(msg));
+    }
+
+    // Queues a relayed move, written as a two-byte move frame once the client speaks binary.
+    @Override
+    public void sendMove(int move, String text) {
+        enqueue(new OutboundMessage(text, move));
+    }
+
+    // Adds a message to the bounded outbound queue and schedules a flush, closing a client the policy gives up on.
+    private void enqueue(OutboundMessage message) {
+        if (closed) return;
+        if (!outbound.offer(message)) {
+            loop.execute(this, () -> {
+                Log.warn("slow-consumer", name, null);
+                close();
+            });
+            return;
+        }
+        if (flushScheduled.compareAndSet(false, true)) loop.execute(this, this::flush);
+    }
+
+    // Queues a broadcast, sharing its encoded bytes with every other recipient.
+    @Override
+    public void sendBroadcast(Broadcast message) {
+        enqueue(OutboundMessage.shared(message));
+    }
+
+    // Queues a spectator's copy of a move, which the drop policy may discard when the client falls behind.
+    @Override
+    public void sendSpectatorMove(Broadcast message) {
+        enqueue(OutboundMessage.spectatorMove(message));
+    }
+
+    // Checks whether the connection is still open.
+    @Override
+    public boolean isConnected() {
+        return !closed;
+    }
+
+    // Sets the game room the client belongs to.
+    @Override
+    public void setRoom(ChessRoom room) {
+        this.room = room;
+    }
+
+    // Reads what the socket has and dispatches every complete line.
+    void onReadable() {
+        int read;
+        try {
+            read = channel.read(readBuffer);
+        } catch (IOException e) {
+            Log.info("connection-error", name, Log.NO_ROOM, e.getMessage());
+            close();
+            return;
+        }
+        if (read < 0) {
+            close();
+            return;
+        }
+
+        readBuffer.flip();
+        boolean open = binaryIn ? readFrames() : readLines();
+        if (!open) {
+            close();
+            return;
+        }
+        readBuffer.compact();
+
+        if (!readBuffer.hasRemaining()) {
+            Log.warn("line-too-long", name, "longer than " + BUFFER_SIZE + " bytes");
+            close();
+        }
+    }
+
+    // Dispatches complete lines, switching to frames after a hello line; returns false when the client leaves.
+    private boolean readLines() {
+        int start = readBuffer.position();
+        for (int i = start; i < readBuffer.limit(); i++) {
+            if (readBuffer.get(i) != '\n') continue;
+            int end = i > start && readBuffer.get(i - 1) == '\r' ? i - 1 : i;
+            String line = new String(readBuffer.array(), start, end - start, StandardCharsets.UTF_8);
+            start = i + 1;
+            readBuffer.position(start);
+            if (line.equals(BinaryProtocol.HELLO)) {
+                acceptBinary();
+                return readFrames();
+            }
+            if (!Protocol.handleLine(this, room, line)) return false;
+        }
+        readBuffer.position(start);
+        return true;
+    }
+
+    // Dispatches complete frames in place, without copying payloads; returns false when the client leaves.
+    private boolean readFrames() {
+        while (readBuffer.remaining() >= BinaryProtocol.HEADER_BYTES) {
+            int start = readBuffer.position();
+            int length = readBuffer.getShort(start) & 0xFFFF;
+            if (length == 0 || length > BinaryProtocol.MAX_FRAME) {
+                Log.warn("bad-frame-length", name, Integer.toString(length));
+                return false;
+            }
+            int end = start + BinaryProtocol.HEADER_BYTES + length;
+            if (end > readBuffer.limit()) break;
+
+            int limit = readBuffer.limit();
+            int opcode = readBuffer.get(start + BinaryProtocol.HEADER_BYTES) & 0xFF;
+            readBuffer.position(start + BinaryProtocol.HEADER_BYTES + 1).limit(end);
+            boolean open = Protocol.handleFrame(this, room, opcode, readBuffer);
+            readBuffer.limit(limit).position(end);
+            if (!open) return false;
+        }
+        return true;
+    }
+
+    // Switches input to frames now and output after the queued acknowledgement line.
+    private void acceptBinary() {
+        binaryIn = true;
+        enqueue(OutboundMessage.acceptBinary());
+    }
+
+    // Continues writing once the socket can accept more bytes.
+    void onWritable() {
+        flush();
+    }
+
+    // Coalesces queued lines into the write buffer and writes until the queue is empty or the socket is full.
+    private void flush() {
+        flushScheduled.set(false);
+        if (closed) {
+            outbound.clear();
+            return;
+        }
+        try {
+            int written;
+            do {
+                fillWriteBuffer();
+                writeBuffer.flip();
+                written = channel.write(writeBuffer);
+                writeBuffer.compact();
+            } while (written > 0 && hasPendingOutput());
+        } catch (IOException e) {
+            Log.info("connection-error", name, Log.NO_ROOM, e.getMessage());
+            close();
+            return;
+        }
+        key.interestOps(hasPendingOutput() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    // Encodes queued messages into the write buffer, carrying over one that does not fit.
+    private void fillWriteBuffer() {
+        while (writeBuffer.hasRemaining()) {
+            if (partial == null) {
+                OutboundMessage next = outbound.poll();
+                if (next == null) return;
+                partial = encode(next);
+            }
+            int count = Math.min(partial.remaining(), writeBuffer.remaining());
+            writeBuffer.put(writeBuffer.position(), partial, partial.position(), count);
+            writeBuffer.position(writeBuffer.position() + count);
+            partial.position(partial.position() + count);
+            if (!partial.hasRemaining()) partial = null;
+        }
+    }
+
+    // Encodes a message in the format the client expects at this point of the stream.
+    private ByteBuffer encode(OutboundMessage message) {
+        ByteBuffer bytes = message.encode(binaryOut);
+        if (message.switchesToBinary()) binaryOut = true;
+        return bytes;
+    }
+
+    // Checks whether any bytes are still waiting to be written.
+    private boolean hasPendingOutput() {
+        return writeBuffer.position() > 0 || partial != null || !outbound.isEmpty();
+    }
+
+    // Closes the channel once and tells the room or lobby.
+    void close() {
+        if (closed) return;
+        closed = true;
+        key.cancel();
+        outbound.clear();
+        EventLoop.closeQuietly(channel);
+        Protocol.disconnected(this, room);
+    }
+}
@@ -0,0 +1,35 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/** Accepts connections on a server channel and spreads them round-robin over a fixed pool of event loops. */
+public class NioServer {
+    private final int port;
+    private final EventLoop[] loops;
+
+    // Creates the server and starts its event loops.
+    public NioServer(int port, int eventLoops) throws IOException {
+        this.port = port;
+        this.loops = new EventLoop[eventLoops];
+        for (int i = 0; i < eventLoops; i++) loops[i] = new EventLoop("event-loop-" + (i + 1));
+    }
+
+    // Accepts clients on the calling thread until the channel fails.
+    public void run() throws IOException {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port), ServerMain.ACCEPT_BACKLOG);
+            Log.info("server-started", "port " + port + ", " + loops.length + " event loops");
+            int next = 0;
+            while (true) {
+                SocketChannel channel = server.accept();
+                loops[next].register(channel);
+                next = (next + 1) % loops.length;
+            }
+        } finally {
+            for (EventLoop loop : loops) loop.shutdown();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import protocol.BinaryProtocol;
+
+/**
+ * A message waiting in an outbound queue: its text line plus, for relayed moves, the packed move, or a broadcast.
+ * Only a spectator's copy of a move is droppable; everything a player receives carries game state it cannot miss.
+ */
+record OutboundMessage(String text, int move, Broadcast shared, boolean droppable) {
+    static final int TEXT = -1;
+    static final int SWITCH_TO_BINARY = -2;
+
+    // Creates a message encoded by the connection that writes it.
+    OutboundMessage(String text, int move) {
+        this(text, move, null, false);
+    }
+
+    // Creates a plain text message.
+    static OutboundMessage text(String text) {
+        return new OutboundMessage(text, TEXT);
+    }
+
+    // Creates the acknowledgement after which the client is written binary frames.
+    static OutboundMessage acceptBinary() {
+        return new OutboundMessage(BinaryProtocol.ACCEPTED, SWITCH_TO_BINARY);
+    }
+
+    // Wraps a broadcast whose bytes are already encoded and shared with other connections.
+    static OutboundMessage shared(Broadcast message) {
+        return new OutboundMessage(message.text(), TEXT, message, false);
+    }
+
+    // Wraps a spectator's copy of a move broadcast, which the drop policy may discard.
+    static OutboundMessage spectatorMove(Broadcast message) {
+        return new OutboundMessage(message.text(), TEXT, message, true);
+    }
+
+    // Checks whether the connection switches to binary output after this message.
+    boolean switchesToBinary() {
+        return move == SWITCH_TO_BINARY;
+    }
+
+    // Encodes the message as a line or, for binary clients, as a frame; a broadcast only hands out a view of its bytes.
+    ByteBuffer encode(boolean binary) {
+        if (shared != null) return shared.bytes(binary);
+        if (!binary || move == SWITCH_TO_BINARY) return ByteBuffer.wrap((text + "\n").getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(move >= 0 ? BinaryProtocol.moveFrame(move) : BinaryProtocol.encode(text));
+    }
+}
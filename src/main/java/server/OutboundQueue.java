@@ -0,0 +1,100 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Bounded lock-free queue of messages waiting to be written to one client, applying the slow-consumer policy. */
+final class OutboundQueue {
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private static volatile int capacity = DEFAULT_CAPACITY;
+    private static volatile int highWaterMark = DEFAULT_CAPACITY;
+    private static volatile SlowConsumerPolicy policy = SlowConsumerPolicy.DISCONNECT;
+
+    private static final LongAdder queued = new LongAdder();
+    private static final AtomicLong maxDepth = new AtomicLong();
+    private static final LongAdder dropped = new LongAdder();
+    private static final LongAdder disconnects = new LongAdder();
+
+    private final MpscRingBuffer<OutboundMessage> ring = new MpscRingBuffer<>(capacity);
+    private final int limit = Math.min(highWaterMark, ring.capacity());
+    private final SlowConsumerPolicy onSlowConsumer = policy;
+
+    // Sets the capacity, high-water mark and policy used by queues created from now on.
+    static void configure(int newCapacity, int newHighWaterMark, SlowConsumerPolicy newPolicy) {
+        capacity = newCapacity;
+        highWaterMark = newHighWaterMark;
+        policy = newPolicy;
+    }
+
+    // Queues a message from any thread; returns false when the policy says the client must be disconnected. Under the
+    // drop policy only droppable messages are discarded, since a player who silently missed a move or the result
+    // would be left waiting on a game that has moved on.
+    boolean offer(OutboundMessage message) {
+        if (ring.size() >= limit || !ring.offer(message)) {
+            if (onSlowConsumer == SlowConsumerPolicy.DROP && message.droppable()) {
+                dropped.increment();
+                return true;
+            }
+            disconnects.increment();
+            return false;
+        }
+        queued.increment();
+        long depth = ring.size();
+        long previous;
+        while (depth > (previous = maxDepth.get()) && !maxDepth.compareAndSet(previous, depth)) {
+            // Retry until the maximum is at least this depth.
+        }
+        return true;
+    }
+
+    // Removes the oldest message, or returns null; only the draining thread may call it.
+    OutboundMessage poll() {
+        OutboundMessage message = ring.poll();
+        if (message != null) queued.decrement();
+        return message;
+    }
+
+    // Discards everything still queued; only the draining thread may call it.
+    void clear() {
+        while (poll() != null) {
+            // Keep polling so the global depth gauge stays accurate.
+        }
+    }
+
+    // Checks whether the queue is empty.
+    boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    // Returns the number of messages waiting in this queue.
+    int size() {
+        return ring.size();
+    }
+
+    // Returns the number of messages waiting across all connections.
+    static long queuedCount() {
+        return queued.sum();
+    }
+
+    // Returns the deepest any single queue has been.
+    static long maxDepth() {
+        return maxDepth.get();
+    }
+
+    // Returns the number of messages dropped under the drop policy.
+    static long droppedCount() {
+        return dropped.sum();
+    }
+
+    // Returns the number of clients disconnected for not reading.
+    static long disconnectCount() {
+        return disconnects.sum();
+    }
+
+    // Returns a one-line summary of queue depth and slow-consumer actions across all connections.
+    static String summary() {
+        return "queued " + queued.sum() + ", max depth " + maxDepth.get() + ", dropped " + dropped.sum()
+                + ", slow-consumer disconnects " + disconnects.sum();
+    }
+}
@@ -0,0 +1,33 @@
+package server;
+
+/** A participant in a chess room that receives protocol messages from the server. */
+public interface Player {
+    // Returns the player's display name.
+    String getName();
+
+    // Delivers a protocol message to the player.
+    void sendMessage(String msg);
+
+    // Delivers a relayed move as its packed binary form and its text line; text players just send the line.
+    default void sendMove(int move, String text) {
+        sendMessage(text);
+    }
+
+    // Delivers a message encoded once for many recipients; players without their own encoder just send the line.
+    default void sendBroadcast(Broadcast message) {
+        sendMessage(message.text());
+    }
+
+    // Delivers a spectator's copy of a move, which a connection may drop rather than close a slow reader.
+    default void sendSpectatorMove(Broadcast message) {
+        sendBroadcast(message);
+    }
+
+    // Checks whether the player can still receive messages; only network connections ever stop.
+    default boolean isConnected() {
+        return true;
+    }
+
+    // Sets the game room the player belongs to.
+    void setRoom(ChessRoom room);
+}
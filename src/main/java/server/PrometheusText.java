@@ -0,0 +1,48 @@
+package server;
+
+import metrics.LatencyRecorder;
+
+/** Builds a scrape response in the Prometheus text exposition format, one metric family at a time. */
+public final class PrometheusText {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final StringBuilder text = new StringBuilder(4096);
+
+    // Adds a monotonically increasing count.
+    public PrometheusText counter(String name, String help, long value) {
+        header(name, help, "counter");
+        text.append(name).append(' ').append(value).append('\n');
+        return this;
+    }
+
+    // Adds a value that can go up and down.
+    public PrometheusText gauge(String name, String help, long value) {
+        header(name, help, "gauge");
+        text.append(name).append(' ').append(value).append('\n');
+        return this;
+    }
+
+    // Adds a latency histogram as a summary in seconds, its quantiles read from the recorder's buckets at scrape time.
+    public PrometheusText summary(String name, String help, LatencyRecorder latency) {
+        header(name, help, "summary");
+        for (double quantile : QUANTILES) {
+            text.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(latency.percentileMicros(quantile) / 1e6).append('\n');
+        }
+        text.append(name).append("_sum ").append(latency.totalNanos() / 1e9).append('\n');
+        text.append(name).append("_count ").append(latency.count()).append('\n');
+        return this;
+    }
+
+    // Writes the HELP and TYPE lines that open a family.
+    private void header(String name, String help, String type) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    // Returns the response body.
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
@@ -0,0 +1,121 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import protocol.BinaryProtocol;
+
+/** Dispatches the text lines and binary frames a client sends, shared by the blocking and the non-blocking servers. */
+final class Protocol {
+    private static final AtomicInteger userCount = new AtomicInteger(1);
+    private static final LongAdder connects = new LongAdder();
+    private static final LongAdder disconnects = new LongAdder();
+
+    private Protocol() {
+    }
+
+    // Returns a unique name for a newly connected client.
+    static String nextUserName() {
+        return "USER" + userCount.getAndIncrement();
+    }
+
+    // Counts a newly connected client and puts it in the lobby.
+    static void connected(Player player) {
+        connects.increment();
+        Log.info("connected", player.getName(), Log.NO_ROOM, null);
+        ServerMain.joinLobby(player);
+    }
+
+    // Returns the number of clients connected since startup.
+    static long connectCount() {
+        return connects.sum();
+    }
+
+    // Returns the number of clients connected right now.
+    static long openConnections() {
+        return connects.sum() - disconnects.sum();
+    }
+
+    // Handles one line from the player and returns false when the player asked to leave.
+    static boolean handleLine(Player player, ChessRoom room, String line) {
+        return handleLine(player, room, line, System.nanoTime());
+    }
+
+    // Handles one line that arrived at the given System.nanoTime value, which starts the move's relay clock.
+    private static boolean handleLine(Player player, ChessRoom room, String line, long receivedAt) {
+        Log.debug("says", player.getName(), room == null ? Log.NO_ROOM : room.getId(), Log.NO_OPCODE, line);
+        if (room == null && ServerMain.forwardToRoom(player, line)) return !line.equals("EXIT");
+
+        if (line.equals("READY") && room != null) {
+            room.setReady(player);
+        } else if (line.startsWith("MOVE") && room != null) {
+            room.forwardMove(player, line, receivedAt);
+        } else if (line.startsWith("RATING ") && room == null) {
+            try {
+                ServerMain.setRating(player, Integer.parseInt(line.substring("RATING ".length()).trim()));
+            } catch (NumberFormatException e) {
+                player.sendMessage("ERROR bad rating: " + line);
+            }
+        } else if (line.startsWith("RESUME ") && room == null) {
+            ServerMain.resume(player, line.substring("RESUME ".length()).trim());
+        } else if (line.startsWith("WATCH ") && room == null) {
+            ServerMain.watch(player, line.substring("WATCH ".length()).trim());
+        } else if (line.equals("EXIT")) {
+            // Leaving on purpose forfeits at once; only dropped connections get a grace period.
+            if (room != null && !room.unwatch(player)) room.notifyOpponentDisconnected(player);
+            return false;
+        }
+        return true;
+    }
+
+    // Handles one binary frame from the player and returns false when the player asked to leave. Malformed frames are
+    // answered or logged here, never thrown into the transport.
+    static boolean handleFrame(Player player, ChessRoom room, int opcode, ByteBuffer payload) {
+        long receivedAt = System.nanoTime();
+        Log.debug("frame", player.getName(), room == null ? Log.NO_ROOM : room.getId(), opcode, null);
+        int move = opcode == BinaryProtocol.MOVE ? BinaryProtocol.readMove(payload) : BinaryProtocol.MALFORMED_MOVE;
+        if (opcode == BinaryProtocol.MOVE && move == BinaryProtocol.MALFORMED_MOVE) {
+            player.sendMessage("ERROR malformed move");
+            return true;
+        }
+        if (room == null && opcode != BinaryProtocol.TEXT && BinaryProtocol.isClientOpcode(opcode)
+                && ServerMain.isSeatedElsewhere(player)) {
+            ServerMain.forwardToRoom(player, BinaryProtocol.decode(opcode, payload));
+            return opcode != BinaryProtocol.EXIT;
+        }
+        switch (opcode) {
+            case BinaryProtocol.READY -> {
+                if (room != null) room.setReady(player);
+            }
+            case BinaryProtocol.MOVE -> {
+                if (room != null) room.forwardMove(player, move, receivedAt);
+            }
+            case BinaryProtocol.EXIT -> {
+                if (room != null && !room.unwatch(player)) room.notifyOpponentDisconnected(player);
+                return false;
+            }
+            case BinaryProtocol.TEXT -> {
+                return handleLine(player, room, BinaryProtocol.decode(opcode, payload), receivedAt);
+            }
+            default -> Log.warn("unexpected-opcode", player.getName(), Integer.toString(opcode));
+        }
+        return true;
+    }
+
+    // Counts a client that disconnected and releases it here or on the node holding its seat or queue place.
+    static void disconnected(Player player, ChessRoom room) {
+        disconnects.increment();
+        Log.info("disconnected", player.getName(), room == null ? Log.NO_ROOM : room.getId(), null);
+        if (!ServerMain.leaveCluster(player, room)) release(player, room);
+    }
+
+    // Holds the player's seat for a resume, or tells the opponent or the lobby that the player is gone for good.
+    static void release(Player player, ChessRoom room) {
+        if (room != null) {
+            if (!room.unwatch(player) && !ServerMain.suspend(player, room)) room.notifyOpponentDisconnected(player);
+        } else {
+            ServerMain.leaveLobby(player);
+        }
+    }
+}
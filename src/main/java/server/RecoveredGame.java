@@ -0,0 +1,5 @@
+package server;
+
+/** A game the journal shows as started but never ended, with its seat tokens and its moves packed in ply order. */
+public record RecoveredGame(long roomId, long startedAt, long whiteToken, long blackToken, int[] moves) {
+}
@@ -0,0 +1,55 @@
+package server;
+
+/** Stands in for a player connected to another node, relaying everything the lobby or room sends it over the broker. */
+final class RemotePlayer implements Player {
+    private final ClusterNode cluster;
+    private final int node;
+    private final String name;
+    private volatile ChessRoom room;
+
+    // Creates the stand-in for the player with the given name on the given node.
+    RemotePlayer(ClusterNode cluster, int node, String name) {
+        this.cluster = cluster;
+        this.node = node;
+        this.name = name;
+    }
+
+    // Returns the player's name qualified by its node, unique across the cluster.
+    @Override
+    public String getName() {
+        return key(node, name);
+    }
+
+    // Sends the message to the player's node, which hands it to the connection.
+    @Override
+    public void sendMessage(String msg) {
+        cluster.deliver(node, name, msg);
+    }
+
+    // Seats the stand-in and tells the player's node to forward the player's lines here.
+    @Override
+    public void setRoom(ChessRoom room) {
+        this.room = room;
+        cluster.seat(node, name, room);
+    }
+
+    // Returns the room the stand-in is seated in, or null.
+    ChessRoom room() {
+        return room;
+    }
+
+    // Returns the node the player is connected to.
+    int node() {
+        return node;
+    }
+
+    // Returns the player's name on its own node.
+    String localName() {
+        return name;
+    }
+
+    // Returns the cluster-wide name of a player: its name on its node, then "@" and the node id.
+    static String key(int node, String name) {
+        return name + "@" + node;
+    }
+}
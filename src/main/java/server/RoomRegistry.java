@@ -0,0 +1,216 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** Live rooms keyed by numeric id, spread over lock-striped segments of open-addressed long-keyed tables. */
+public final class RoomRegistry {
+    private static final int SEGMENTS = 64;
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final ConcurrentHashMap<Long, ChessRoom> seatTokens = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final LongAdder live = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private volatile GameJournal journal;
+
+    // Creates an empty registry.
+    public RoomRegistry() {
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment();
+    }
+
+    // Journals every room created from now on, and keeps new ids clear of those already in the journal.
+    public void useJournal(GameJournal journal) {
+        this.journal = journal;
+        nextId.accumulateAndGet(journal.maxRoomId() + 1, Math::max);
+    }
+
+    // Creates a room for the two players under a fresh id; the room removes itself when it closes.
+    public ChessRoom create(Player white, Player black) {
+        return register(new ChessRoom(nextId.getAndIncrement(), white, black, journal, this::remove));
+    }
+
+    // Rebuilds an unfinished game under its old id with empty seats; returns null, closing it, if it cannot go on.
+    public ChessRoom restore(RecoveredGame game) {
+        nextId.accumulateAndGet(game.roomId() + 1, Math::max);
+        ChessRoom room = register(new ChessRoom(game.roomId(), new VacantSeat("white"), new VacantSeat("black"),
+                game.whiteToken(), game.blackToken(), journal, this::remove));
+        if (room.replay(game.moves())) return room;
+        room.close();
+        return null;
+    }
+
+    // Adds a new room to its segment, indexes its seat tokens and counts it.
+    private ChessRoom register(ChessRoom room) {
+        segmentFor(room.getId()).put(room.getId(), room);
+        for (long token : room.tokens()) {
+            if (token != 0) seatTokens.put(token, room);
+        }
+        live.increment();
+        created.increment();
+        return room;
+    }
+
+    // Returns the live room with the given id, or null.
+    public ChessRoom get(long id) {
+        return segmentFor(id).get(id);
+    }
+
+    // Returns the live room holding a seat with the given token, or null.
+    public ChessRoom findBySeatToken(long token) {
+        return seatTokens.get(token);
+    }
+
+    // Removes a closed room; returns false when it was already gone.
+    boolean remove(ChessRoom room) {
+        if (!segmentFor(room.getId()).remove(room.getId())) return false;
+        for (long token : room.tokens()) seatTokens.remove(token, room);
+        live.decrement();
+        closed.increment();
+        return true;
+    }
+
+    // Returns a point-in-time copy of the live rooms, taken one segment at a time.
+    public List<ChessRoom> snapshot() {
+        List<ChessRoom> rooms = new ArrayList<>();
+        for (Segment segment : segments) segment.copyTo(rooms);
+        return rooms;
+    }
+
+    // Returns the number of live rooms.
+    public long size() {
+        return live.sum();
+    }
+
+    // Returns the number of rooms created since startup.
+    public long createdCount() {
+        return created.sum();
+    }
+
+    // Returns the number of rooms closed since startup.
+    public long closedCount() {
+        return closed.sum();
+    }
+
+    // Returns a one-line summary of the live-room gauge and lifetime counters.
+    public String summary() {
+        return "live " + size() + ", created " + created.sum() + ", closed " + closed.sum();
+    }
+
+    // Picks the segment for an id; sequential ids are scrambled so neighbours land on different locks.
+    private Segment segmentFor(long id) {
+        return segments[(int) (mix(id) >>> 58) & (SEGMENTS - 1)];
+    }
+
+    // Spreads the bits of an id with the SplitMix64 finalizer.
+    static long mix(long id) {
+        long z = id * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** One lock's share of the rooms: linear probing over parallel id and room arrays, with backward-shift removal. */
+    private static final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private long[] ids = new long[INITIAL_SEGMENT_CAPACITY];
+        private ChessRoom[] rooms = new ChessRoom[INITIAL_SEGMENT_CAPACITY];
+        private int size;
+
+        // Inserts or replaces the room under the id, growing the table past a half load factor.
+        void put(long id, ChessRoom room) {
+            lock.lock();
+            try {
+                if ((size + 1) * 2 > rooms.length) resize(rooms.length * 2);
+                int slot = find(ids, rooms, id);
+                if (rooms[slot] == null) size++;
+                ids[slot] = id;
+                rooms[slot] = room;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Returns the room under the id, or null.
+        ChessRoom get(long id) {
+            lock.lock();
+            try {
+                return rooms[find(ids, rooms, id)];
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Removes the id and closes the gap by shifting later entries of its probe run back; shrinks when sparse.
+        boolean remove(long id) {
+            lock.lock();
+            try {
+                int mask = rooms.length - 1;
+                int hole = find(ids, rooms, id);
+                if (rooms[hole] == null) return false;
+                rooms[hole] = null;
+                size--;
+
+                for (int slot = (hole + 1) & mask; rooms[slot] != null; slot = (slot + 1) & mask) {
+                    int home = home(ids[slot], mask);
+                    // Move the entry back unless its home lies cyclically between the hole and its slot.
+                    if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                        ids[hole] = ids[slot];
+                        rooms[hole] = rooms[slot];
+                        rooms[slot] = null;
+                        hole = slot;
+                    }
+                }
+                if (rooms.length > INITIAL_SEGMENT_CAPACITY && size * 8 < rooms.length) resize(rooms.length / 2);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Appends the segment's rooms to the list.
+        void copyTo(List<ChessRoom> out) {
+            lock.lock();
+            try {
+                for (ChessRoom room : rooms) {
+                    if (room != null) out.add(room);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Rehashes every entry into tables of the new capacity.
+        private void resize(int capacity) {
+            long[] oldIds = ids;
+            ChessRoom[] oldRooms = rooms;
+            ids = new long[capacity];
+            rooms = new ChessRoom[capacity];
+            for (int i = 0; i < oldRooms.length; i++) {
+                if (oldRooms[i] == null) continue;
+                int slot = find(ids, rooms, oldIds[i]);
+                ids[slot] = oldIds[i];
+                rooms[slot] = oldRooms[i];
+            }
+        }
+
+        // Returns the slot holding the id, or the empty slot where it would go.
+        private static int find(long[] ids, ChessRoom[] rooms, long id) {
+            int mask = rooms.length - 1;
+            int slot = home(id, mask);
+            while (rooms[slot] != null && ids[slot] != id) slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        // Returns the preferred slot of an id.
+        private static int home(long id, int mask) {
+            return (int) mix(id) & mask;
+        }
+    }
+}
@@ -1,45 +1,392 @@
 package server;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import metrics.LatencyRecorder;
 
 /** Launches the chess server and manages client connections and game room assignments. */
 public class ServerMain {
     private static final int PORT = 5000;
-    private static final List<ClientHandler> lobby = new CopyOnWriteArrayList<>();
-    private static final List<ChessRoom> rooms = new CopyOnWriteArrayList<>();
+    private static final int METRICS_PORT = 9464;
+    static final int ACCEPT_BACKLOG = 1024;
+    private static final long BOT_WAIT_SECONDS = 15;
+    private static final long STATS_PERIOD_SECONDS = 60;
+    private static final long MATCH_TICK_MILLIS = 100;
+    private static final long REAP_PERIOD_SECONDS = 60;
+    private static final RoomRegistry rooms = new RoomRegistry();
+    private static volatile long roomIdleNanos = TimeUnit.MINUTES.toNanos(30);
+    private static volatile GameJournal journal;
+    private static final ScheduledExecutorService lobbyTimer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "lobby-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Matchmaker matchmaker = new Matchmaker(ServerMain::pair, ServerMain::pairWithBot,
+            BOT_WAIT_SECONDS, TimeUnit.SECONDS);
+    // Seat grace periods and chess clocks of every room share one wheel; 10 ms ticks keep flag-falls prompt.
+    private static final TimerWheel roomTimers = new TimerWheel("room-timers", 10, TimeUnit.MILLISECONDS, 4096);
+    private static volatile long graceNanos = TimeUnit.SECONDS.toNanos(60);
+    // Untimed unless --clock is given: clock values ride on TURN and MOVE, which clients written before clocks reject.
+    private static volatile TimeControl timeControl;
+    private static volatile ClusterNode cluster;
 
-    // Starts the server and listens for incoming client connections.
+    // Starts the server from the command line: --mode=threads|virtual|nio [--port=N] [--event-loops=N]
+    // [--outbound-capacity=N] [--high-water=N] [--slow-consumer=drop|disconnect] [--room-idle-minutes=N]
+    // [--journal=DIR|none] [--journal-segment-mb=N] [--grace-seconds=N] [--metrics-port=N, 0 to disable]
+    // [--log-level=debug|info|warn|error] [--log-file=PATH] [--clock=MINUTES+SECONDS|none]
+    // [--node=ID --peers=ID@HOST:PORT,...], where the peers include this node and the lowest id runs matchmaking.
+    // Games are untimed and unjournaled unless --clock and --journal are given; nodes sharing a machine each need
+    // their own journal directory.
     public static void main(String[] args) throws IOException {
-        System.out.println("Server started on port " + PORT);
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
+        String mode = "threads";
+        int port = PORT;
+        int eventLoops = Runtime.getRuntime().availableProcessors();
+        int outboundCapacity = OutboundQueue.DEFAULT_CAPACITY;
+        int highWaterMark = -1;
+        SlowConsumerPolicy slowConsumer = SlowConsumerPolicy.DISCONNECT;
+        String journalDirectory = "none";
+        int segmentBytes = GameJournal.DEFAULT_SEGMENT_BYTES;
+        int metricsPort = METRICS_PORT;
+        LogLevel logLevel = LogLevel.INFO;
+        Path logFile = null;
+        int nodeId = -1;
+        String peers = null;
+        for (String arg : args) {
+            if (arg.startsWith("--mode=")) {
+                mode = arg.substring("--mode=".length());
+            } else if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--event-loops=")) {
+                eventLoops = Integer.parseInt(arg.substring("--event-loops=".length()));
+            } else if (arg.startsWith("--outbound-capacity=")) {
+                outboundCapacity = Integer.parseInt(arg.substring("--outbound-capacity=".length()));
+            } else if (arg.startsWith("--high-water=")) {
+                highWaterMark = Integer.parseInt(arg.substring("--high-water=".length()));
+            } else if (arg.startsWith("--slow-consumer=")) {
+                slowConsumer = SlowConsumerPolicy.valueOf(arg.substring("--slow-consumer=".length()).toUpperCase());
+            } else if (arg.startsWith("--room-idle-minutes=")) {
+                roomIdleNanos = TimeUnit.MINUTES.toNanos(Long.parseLong(arg.substring("--room-idle-minutes=".length())));
+            } else if (arg.startsWith("--grace-seconds=")) {
+                graceNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(arg.substring("--grace-seconds=".length())));
+            } else if (arg.startsWith("--clock=")) {
+                String clock = arg.substring("--clock=".length());
+                timeControl = clock.equals("none") ? null : TimeControl.parse(clock);
+            } else if (arg.startsWith("--journal=")) {
+                journalDirectory = arg.substring("--journal=".length());
+            } else if (arg.startsWith("--journal-segment-mb=")) {
+                segmentBytes = Integer.parseInt(arg.substring("--journal-segment-mb=".length())) * 1024 * 1024;
+            } else if (arg.startsWith("--metrics-port=")) {
+                metricsPort = Integer.parseInt(arg.substring("--metrics-port=".length()));
+            } else if (arg.startsWith("--log-level=")) {
+                logLevel = LogLevel.valueOf(arg.substring("--log-level=".length()).toUpperCase());
+            } else if (arg.startsWith("--log-file=")) {
+                logFile = Paths.get(arg.substring("--log-file=".length()));
+            } else if (arg.startsWith("--node=")) {
+                nodeId = Integer.parseInt(arg.substring("--node=".length()));
+            } else if (arg.startsWith("--peers=")) {
+                peers = arg.substring("--peers=".length());
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+
+        if ((nodeId < 0) != (peers == null)) throw new IllegalArgumentException("--node and --peers go together");
+
+        Log.configure(logLevel, logFile);
+        OutboundQueue.configure(outboundCapacity, highWaterMark > 0 ? highWaterMark : outboundCapacity, slowConsumer);
+        if (peers != null) startCluster(nodeId, peers);
+        if (!journalDirectory.equals("none")) openJournal(journalDirectory, segmentBytes);
+        if (metricsPort > 0) startMetrics(metricsPort);
+        lobbyTimer.scheduleWithFixedDelay(matchmaker::tick, MATCH_TICK_MILLIS, MATCH_TICK_MILLIS,
+                TimeUnit.MILLISECONDS);
+        lobbyTimer.scheduleWithFixedDelay(ServerMain::reapIdleRooms, REAP_PERIOD_SECONDS, REAP_PERIOD_SECONDS,
+                TimeUnit.SECONDS);
+        lobbyTimer.scheduleAtFixedRate(ServerMain::reportStats, STATS_PERIOD_SECONDS, STATS_PERIOD_SECONDS,
+                TimeUnit.SECONDS);
+        switch (mode) {
+            case "threads" -> runThreadPerConnection(port, Thread.ofPlatform().name("client-", 1));
+            case "virtual" -> runThreadPerConnection(port, Thread.ofVirtual().name("client-virtual-", 1));
+            case "nio" -> new NioServer(port, eventLoops).run();
+            default -> throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+    }
+
+    // Opens the game journal, restores the games it shows as unfinished and closes it cleanly on shutdown.
+    private static void openJournal(String directory, int segmentBytes) throws IOException {
+        GameJournal opened = GameJournal.open(Paths.get(directory), segmentBytes);
+        rooms.useJournal(opened);
+        int restored = 0;
+        for (RecoveredGame game : opened.recoveredGames()) {
+            ChessRoom room = rooms.restore(game);
+            if (room == null) continue;
+            room.holdVacantSeats(roomTimers, graceNanos);
+            if (timeControl != null) room.useClock(timeControl, roomTimers);
+            restored++;
+        }
+        journal = opened;
+        Runtime.getRuntime().addShutdownHook(new Thread(opened::close, "journal-close"));
+        Log.info("journal-opened", directory + ": restored " + restored + " of " + opened.recoveredGames().size()
+                + " unfinished games");
+    }
+
+    // Joins the cluster described by "ID@HOST:PORT,..." as the given node, listening at its own entry.
+    private static void startCluster(int nodeId, String peers) throws IOException {
+        Map<Integer, InetSocketAddress> addresses = new HashMap<>();
+        for (String peer : peers.split(",")) {
+            int at = peer.indexOf('@');
+            int colon = peer.lastIndexOf(':');
+            if (at < 0 || colon < at) throw new IllegalArgumentException("Peer must be ID@HOST:PORT: " + peer);
+            addresses.put(Integer.parseInt(peer.substring(0, at)),
+                    new InetSocketAddress(peer.substring(at + 1, colon), Integer.parseInt(peer.substring(colon + 1))));
+        }
+        int lobbyNode = Collections.min(addresses.keySet());
+        ClusterNode node = new ClusterNode(new SocketBroker(nodeId, addresses), lobbyNode);
+        node.start();
+        cluster = node;
+        Log.info("cluster-joined", "node " + nodeId + " of " + addresses.size() + ", matchmaking on node " + lobbyNode);
+    }
+
+    // Serves the metrics on the loopback interface only; a port already in use is reported and the server runs without.
+    private static void startMetrics(int port) {
+        try {
+            new MetricsEndpoint(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), ServerMain::renderMetrics)
+                    .start();
+            Log.info("metrics-started", "http://localhost:" + port + "/metrics");
+        } catch (IOException e) {
+            Log.warn("metrics-not-started", "port " + port + ": " + e.getMessage());
+        }
+    }
+
+    // Renders every counter, gauge and histogram for a scrape.
+    private static String renderMetrics() {
+        PrometheusText metrics = new PrometheusText()
+                .gauge("chess_connections_open", "Clients connected now.", Protocol.openConnections())
+                .counter("chess_connections_total", "Clients connected since startup.", Protocol.connectCount())
+                .gauge("chess_rooms_live", "Rooms with a game in progress.", rooms.size())
+                .counter("chess_rooms_created_total", "Rooms created since startup.", rooms.createdCount())
+                .counter("chess_rooms_closed_total", "Rooms closed since startup.", rooms.closedCount())
+                .counter("chess_moves_total", "Moves accepted and relayed.", ChessRoom.relayLatency().count())
+                .summary("chess_move_relay_seconds", "Time from a move arriving to its relay being queued.",
+                        ChessRoom.relayLatency())
+                .summary("chess_move_validation_seconds", "Time spent validating and applying a move.",
+                        ChessRoom.validationLatency())
+                .gauge("chess_lobby_waiting", "Players waiting to be matched.", matchmaker.waitingCount())
+                .counter("chess_matches_total", "Pairs matched by rating.", matchmaker.matchCount())
+                .counter("chess_bot_matches_total", "Players handed to a bot after waiting.", matchmaker.expiredCount())
+                .summary("chess_time_to_match_seconds", "Time from joining the lobby to being matched.",
+                        matchmaker.timeToMatch())
+                .gauge("chess_outbound_queued", "Messages waiting in outbound queues.", OutboundQueue.queuedCount())
+                .gauge("chess_outbound_max_depth", "Deepest any outbound queue has been.", OutboundQueue.maxDepth())
+                .counter("chess_outbound_dropped_total", "Messages dropped for slow consumers.",
+                        OutboundQueue.droppedCount())
+                .counter("chess_slow_consumer_disconnects_total", "Clients disconnected for not reading.",
+                        OutboundQueue.disconnectCount())
+                .gauge("chess_room_timers", "Seat grace and flag timers pending.", roomTimers.pendingCount())
+                .counter("chess_flag_falls_total", "Games lost on time.", ChessRoom.flagCount())
+                .counter("chess_log_written_total", "Log events written.", Log.writtenCount())
+                .counter("chess_log_dropped_total", "Log events dropped because the log ring was full.",
+                        Log.droppedCount());
+        ClusterNode node = cluster;
+        if (node != null) {
+            Broker broker = node.broker();
+            metrics.counter("chess_cluster_envelopes_sent_total", "Envelopes queued for other nodes.", broker.sentCount())
+                    .counter("chess_cluster_envelopes_received_total", "Envelopes received from other nodes.",
+                            broker.receivedCount())
+                    .counter("chess_cluster_batches_total", "Batches written to other nodes.", broker.batchCount())
+                    .counter("chess_cluster_envelopes_dropped_total", "Envelopes that could not be sent.",
+                            broker.droppedCount())
+                    .gauge("chess_cluster_remote_seats", "Players connected here whose room is on another node.",
+                            node.remoteSeatCount())
+                    .gauge("chess_cluster_stand_ins", "Players connected elsewhere who are queued or seated here.",
+                            node.standInCount());
+        }
+        GameJournal current = journal;
+        if (current != null) {
+            metrics.counter("chess_journal_appended_total", "Records appended to the journal.", current.appendedCount())
+                    .counter("chess_journal_written_total", "Records written to the mapped segment.",
+                            current.writtenCount())
+                    .counter("chess_journal_forces_total", "Batches forced to disk.", current.forceCount())
+                    .counter("chess_journal_dropped_total", "Records dropped because the ring was full or the writer "
+                            + "failed.", current.droppedCount())
+                    .counter("chess_journal_segments_retired_total", "Segments deleted after all their games ended.",
+                            current.retiredCount());
+        }
+        return metrics.toString();
+    }
+
+    // Accepts clients and serves each one on its own thread, platform or virtual depending on the builder.
+    private static void runThreadPerConnection(int port, Thread.Builder threads) throws IOException {
+        Log.info("server-started", "port " + port);
+        try (ServerSocket serverSocket = new ServerSocket(port, ACCEPT_BACKLOG)) {
             while (true) {
                 Socket socket = serverSocket.accept();
                 ClientHandler handler = new ClientHandler(socket);
-                new Thread(handler).start();
+                threads.start(handler);
             }
         }
     }
 
-    // Adds a client to the lobby and creates a game room if two players are available.
-    public static synchronized void joinLobby(ClientHandler player) {
-        lobby.add(player);
-        System.out.println(player.getName() + " joined the lobby. Total: " + lobby.size());
+    // Puts a client in the matchmaking queue at the default rating, on the lobby node when clustered; pairing happens
+    // on the next tick.
+    public static void joinLobby(Player player) {
+        ClusterNode node = cluster;
+        if (node == null || !node.joinLobby(player)) matchmaker.enqueue(player, Matchmaker.DEFAULT_RATING);
+        Log.info("joined-lobby", player.getName(), Log.NO_ROOM, null);
+    }
 
-        if (lobby.size() >= 2) {
-            ClientHandler white = lobby.remove(0);
-            ClientHandler black = lobby.remove(0);
+    // Moves a client who is still waiting to the rating it reported.
+    public static void setRating(Player player, int rating) {
+        ClusterNode node = cluster;
+        if (node != null && node.rate(player, rating)) return;
+        if (matchmaker.rerate(player, rating)) {
+            Log.info("rated", player.getName(), Log.NO_ROOM, Integer.toString(rating));
+        }
+    }
 
-            ChessRoom room = new ChessRoom(white, black);
-            rooms.add(room);
+    // Removes a client that disconnected before being paired.
+    public static void leaveLobby(Player player) {
+        matchmaker.cancel(player);
+    }
 
-            white.setRoom(room);
-            black.setRoom(room);
+    // Takes a client out of the queue, wherever it runs; returns false when the client was not waiting here.
+    private static boolean withdraw(Player player) {
+        ClusterNode node = cluster;
+        return node != null && node.withdraw(player) || matchmaker.cancel(player);
+    }
+
+    // Checks whether the client's room lives on another node.
+    static boolean isSeatedElsewhere(Player player) {
+        ClusterNode node = cluster;
+        return node != null && node.isSeatedElsewhere(player);
+    }
 
-            room.start();
+    // Forwards a line to the node hosting the client's room; returns false when that room is not elsewhere.
+    static boolean forwardToRoom(Player player, String line) {
+        ClusterNode node = cluster;
+        return node != null && node.forward(player, line);
+    }
+
+    // Releases a departed client on the node holding its seat or queue place; returns false when that is this node.
+    static boolean leaveCluster(Player player, ChessRoom room) {
+        ClusterNode node = cluster;
+        return node != null && node.leave(player, room);
+    }
+
+    // Holds a dropped player's seat for the grace period; returns false when the room has no game in progress to hold.
+    public static boolean suspend(Player player, ChessRoom room) {
+        return room.suspend(player, roomTimers, graceNanos);
+    }
+
+    // Moves a waiting client into the seat its token names, or tells it why not and leaves it in the lobby.
+    public static void resume(Player player, String tokenText) {
+        long token = ChessRoom.parseToken(tokenText);
+        ChessRoom room = token == 0 ? null : rooms.findBySeatToken(token);
+        if (room == null) {
+            player.sendMessage("ERROR unknown or expired session: RESUME " + tokenText);
+            return;
+        }
+        if (!withdraw(player)) {
+            player.sendMessage("ERROR already seated in a game: RESUME " + tokenText);
+            return;
         }
+        if (!room.resume(token, player)) {
+            player.sendMessage("ERROR unknown or expired session: RESUME " + tokenText);
+            joinLobby(player);
+        }
+    }
+
+    // Moves a waiting client into the room with the given id as a spectator, or tells it why not.
+    public static void watch(Player player, String roomId) {
+        ChessRoom room;
+        try {
+            room = rooms.get(Long.parseLong(roomId));
+        } catch (NumberFormatException e) {
+            player.sendMessage("ERROR bad room id: WATCH " + roomId);
+            return;
+        }
+        if (room == null) {
+            player.sendMessage("ERROR no such game: WATCH " + roomId);
+            return;
+        }
+        // Withdraws the client if it is still queued; a spectator whose last game ended is not.
+        withdraw(player);
+        if (!room.watch(player)) {
+            player.sendMessage("ERROR no such game: WATCH " + roomId);
+            joinLobby(player);
+        }
+    }
+
+    // Starts a game for a matched pair, or puts the survivor back in the queue when the other left while being matched.
+    private static void pair(Player white, Player black) {
+        if (white.isConnected() && black.isConnected()) {
+            createRoom(white, black);
+        } else if (white.isConnected() || black.isConnected()) {
+            Player survivor = white.isConnected() ? white : black;
+            Log.info("requeued", survivor.getName(), Log.NO_ROOM, "opponent left while being matched");
+            joinLobby(survivor);
+        }
+    }
+
+    // Pairs a player nobody matched within the wait with an engine-backed bot.
+    private static void pairWithBot(Player player) {
+        if (!player.isConnected()) return;
+        Log.info("paired-with-bot", player.getName(), Log.NO_ROOM, "waited " + BOT_WAIT_SECONDS + "s");
+        createRoom(player, new BotPlayer());
+    }
+
+    // Closes rooms in which nobody has moved or readied up within the idle timeout.
+    private static void reapIdleRooms() {
+        long now = System.nanoTime();
+        int reaped = 0;
+        for (ChessRoom room : rooms.snapshot()) {
+            if (room.reapIfIdle(now, roomIdleNanos)) reaped++;
+        }
+        if (reaped > 0) Log.info("reaped", reaped + " idle rooms");
+    }
+
+    // Prints the room, move validation, outbound queue, matchmaking and journal gauges once there is activity.
+    private static void reportStats() {
+        LatencyRecorder latency = ChessRoom.validationLatency();
+        if (latency.count() == 0 && rooms.size() == 0) return;
+        Log.info("stats-rooms", rooms.summary());
+        Log.info("stats-move-validation", latency.summary());
+        Log.info("stats-move-relay", ChessRoom.relayLatency().summary());
+        Log.info("stats-outbound-queues", OutboundQueue.summary());
+        Log.info("stats-matchmaking", matchmaker.summary());
+        GameJournal current = journal;
+        if (current != null) Log.info("stats-journal", current.summary());
+        Log.info("stats-log", "written " + Log.writtenCount() + ", dropped " + Log.droppedCount());
+    }
+
+    // Creates a room for two players, under the time control if there is one, and starts the game; returns null when
+    // the game is hosted on another node instead.
+    static ChessRoom createRoom(Player white, Player black) {
+        ClusterNode node = cluster;
+        if (node != null && node.hostElsewhere(white, black)) return null;
+        ChessRoom room = rooms.create(white, black);
+        TimeControl control = timeControl;
+        if (control != null) room.useClock(control, roomTimers);
+
+        white.setRoom(room);
+        black.setRoom(room);
+
+        room.start();
+        // A seat that disconnected before its room was set left through the lobby, which no longer held it, so it
+        // is released here as its disconnect would have; a second release of the same seat does nothing.
+        if (!white.isConnected()) Protocol.release(white, room);
+        if (!black.isConnected()) Protocol.release(black, room);
+        return room;
     }
 }
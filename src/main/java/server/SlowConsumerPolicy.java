@@ -0,0 +1,10 @@
+package server;
+
+/** What a connection does when a client reads slower than the server writes to it. */
+public enum SlowConsumerPolicy {
+    // Discard spectators' copies of moves while the queue is above its high-water mark and keep the client; any
+    // other message that does not fit closes the connection as under DISCONNECT.
+    DROP,
+    // Close the connection once the queue reaches its high-water mark.
+    DISCONNECT
+}
@@ -0,0 +1,268 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Broker over TCP between server processes, typically on one machine's loopback interface. Each node gets one outbound
+ * connection whose writer thread drains a lock-free queue and writes everything waiting as one batch, so a busy node
+ * pays one system call for many relays; each inbound connection has a reader thread that hands envelopes on in order.
+ */
+public final class SocketBroker implements Broker {
+    private static final int QUEUE_CAPACITY = 1 << 16;
+    private static final int BATCH_BYTES = 4 * Envelope.MAX_BYTES;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final long RECONNECT_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private final int nodeId;
+    private final InetSocketAddress address;
+    private final Map<Integer, Link> links = new HashMap<>();
+    private final Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean running = true;
+    private ServerSocket listener;
+    private Consumer<Envelope> handler;
+
+    // Creates a broker for the node, which listens at its own entry in the address map and sends to every other entry.
+    public SocketBroker(int nodeId, Map<Integer, InetSocketAddress> addresses) {
+        this.nodeId = nodeId;
+        this.address = addresses.get(nodeId);
+        if (address == null) throw new IllegalArgumentException("No address for node " + nodeId);
+        for (Map.Entry<Integer, InetSocketAddress> peer : addresses.entrySet()) {
+            if (peer.getKey() != nodeId) links.put(peer.getKey(), new Link(peer.getKey(), peer.getValue()));
+        }
+    }
+
+    // Returns the id of the node this broker serves.
+    @Override
+    public int nodeId() {
+        return nodeId;
+    }
+
+    // Listens for the other nodes and starts one writer per node; envelopes queued before this are sent now.
+    @Override
+    public void start(Consumer<Envelope> handler) throws IOException {
+        this.handler = handler;
+        listener = new ServerSocket();
+        listener.bind(address, ServerMain.ACCEPT_BACKLOG);
+        Thread.ofPlatform().daemon().name("broker-accept").start(this::acceptLoop);
+        for (Link link : links.values()) link.start();
+    }
+
+    // Queues the envelope on the node's link and wakes its writer if it is idle.
+    @Override
+    public boolean send(int node, Envelope envelope) {
+        Link link = links.get(node);
+        if (link == null) throw new IllegalArgumentException("Unknown node " + node);
+        if (envelope.encodedSize() > Envelope.LENGTH_BYTES + Envelope.MAX_BYTES || !link.queue.offer(envelope)) {
+            dropped.increment();
+            return false;
+        }
+        sent.increment();
+        link.wake();
+        return true;
+    }
+
+    // Stops accepting and writing and closes every connection; queued envelopes are discarded.
+    @Override
+    public void close() {
+        running = false;
+        try {
+            if (listener != null) listener.close();
+        } catch (IOException e) {
+            // Closing anyway.
+        }
+        for (Link link : links.values()) link.wake();
+        for (Socket socket : inbound) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing anyway.
+            }
+        }
+    }
+
+    // Returns the number of envelopes queued for sending.
+    @Override
+    public long sentCount() {
+        return sent.sum();
+    }
+
+    // Returns the number of envelopes received and handed on.
+    @Override
+    public long receivedCount() {
+        return received.sum();
+    }
+
+    // Returns the number of batches written, each with one system call.
+    @Override
+    public long batchCount() {
+        return batches.sum();
+    }
+
+    // Returns the number of envelopes dropped because a queue was full, one was too large or the broker closed first.
+    @Override
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    // Accepts connections from other nodes and reads each on its own thread.
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = listener.accept();
+                socket.setTcpNoDelay(true);
+                inbound.add(socket);
+                Thread.ofPlatform().daemon().name("broker-in").start(() -> readLoop(socket));
+            } catch (IOException e) {
+                if (running) Log.warn("broker-accept-failed", e.getMessage());
+            }
+        }
+    }
+
+    // Reads envelopes from one node and hands them to the handler in the order they were sent.
+    private void readLoop(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), READ_BUFFER_BYTES));
+            for (Envelope envelope; (envelope = Envelope.readFrom(in)) != null; ) {
+                received.increment();
+                try {
+                    handler.accept(envelope);
+                } catch (RuntimeException e) {
+                    Log.warn("broker-handler-failed", e.toString());
+                }
+            }
+        } catch (IOException e) {
+            if (running) Log.warn("broker-read-failed", socket.getRemoteSocketAddress() + ": " + e.getMessage());
+        } finally {
+            inbound.remove(socket);
+        }
+    }
+
+    /** The outbound side towards one node: a queue any thread may fill and the writer thread that drains it. */
+    private final class Link {
+        private final int node;
+        private final InetSocketAddress target;
+        private final MpscRingBuffer<Envelope> queue = new MpscRingBuffer<>(QUEUE_CAPACITY);
+        private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_BYTES);
+        private volatile Thread writer;
+        private volatile boolean parked;
+        private SocketChannel channel;
+        private boolean reportedDown;
+
+        Link(int node, InetSocketAddress target) {
+            this.node = node;
+            this.target = target;
+        }
+
+        // Starts the writer thread.
+        void start() {
+            writer = Thread.ofPlatform().daemon().name("broker-out-" + node).start(this::writeLoop);
+        }
+
+        // Unparks the writer if it is waiting for work.
+        void wake() {
+            Thread thread = writer;
+            if (parked && thread != null) LockSupport.unpark(thread);
+        }
+
+        // Drains the queue in batches, one write per batch, connecting and reconnecting to the node as needed. A batch
+        // whose write fails is written again in full once the node is back, since a connection that breaks mid-batch
+        // means the node stopped reading, and dropping the batch would leave its games a move behind this node's.
+        private void writeLoop() {
+            Envelope carried = null;
+            int count = 0;
+            while (running) {
+                if (channel == null && !connect()) {
+                    LockSupport.parkNanos(RECONNECT_NANOS);
+                    continue;
+                }
+                if (count > 0) {
+                    count = writeBatch(count);
+                    continue;
+                }
+                batch.clear();
+                for (Envelope next = carried != null ? carried : queue.poll(); next != null; next = queue.poll()) {
+                    carried = null;
+                    if (next.encodedSize() > batch.remaining()) {
+                        carried = next;
+                        break;
+                    }
+                    next.writeTo(batch);
+                    count++;
+                }
+                if (count == 0) {
+                    parked = true;
+                    if (queue.isEmpty() && running) LockSupport.park(this);
+                    parked = false;
+                    continue;
+                }
+                batch.flip();
+                count = writeBatch(count);
+            }
+            if (count > 0) dropped.add(count);
+            closeChannel();
+        }
+
+        // Writes the whole batch of the given number of envelopes; returns 0 once written, or the count still unsent
+        // after rewinding the batch for another attempt on a new connection.
+        private int writeBatch(int count) {
+            try {
+                while (batch.hasRemaining()) channel.write(batch);
+                batches.increment();
+                return 0;
+            } catch (IOException e) {
+                Log.warn("broker-link-lost", "node " + node + ": " + e.getMessage() + ", resending " + count
+                        + " envelopes");
+                batch.rewind();
+                closeChannel();
+                return count;
+            }
+        }
+
+        // Connects to the node, reporting only the first failure of a run of them.
+        private boolean connect() {
+            try {
+                SocketChannel opened = SocketChannel.open(target);
+                opened.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel = opened;
+                reportedDown = false;
+                Log.info("broker-connected", "node " + node + " at " + target);
+                return true;
+            } catch (IOException e) {
+                if (!reportedDown) Log.warn("broker-unreachable", "node " + node + " at " + target + ": " + e.getMessage());
+                reportedDown = true;
+                return false;
+            }
+        }
+
+        // Closes the connection so the next batch reconnects.
+        private void closeChannel() {
+            if (channel == null) return;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Reconnecting anyway.
+            }
+            channel = null;
+        }
+    }
+}
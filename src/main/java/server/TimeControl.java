@@ -0,0 +1,24 @@
+package server;
+
+import java.util.concurrent.TimeUnit;
+
+/** A base time plus a per-move increment, written on the command line as minutes+seconds such as "10+5". */
+public record TimeControl(long baseNanos, long incrementNanos) {
+    // Parses minutes+seconds; the minutes may be fractional, as in "0.5+1".
+    public static TimeControl parse(String text) {
+        int plus = text.indexOf('+');
+        if (plus < 0) throw new IllegalArgumentException("Time control must be minutes+seconds: " + text);
+        long base = (long) (Double.parseDouble(text.substring(0, plus)) * TimeUnit.MINUTES.toNanos(1));
+        long increment = TimeUnit.SECONDS.toNanos(Long.parseLong(text.substring(plus + 1)));
+        if (base <= 0 || increment < 0) throw new IllegalArgumentException("Time control out of range: " + text);
+        return new TimeControl(base, increment);
+    }
+
+    // Formats the control the way it is parsed.
+    @Override
+    public String toString() {
+        double minutes = (double) baseNanos / TimeUnit.MINUTES.toNanos(1);
+        String base = minutes == Math.rint(minutes) ? Long.toString((long) minutes) : Double.toString(minutes);
+        return base + "+" + TimeUnit.NANOSECONDS.toSeconds(incrementNanos);
+    }
+}
@@ -0,0 +1,133 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel: one thread advances a ring of slots every tick and fires the timeouts in the current slot,
+ * so any number of pending deadlines costs one thread and O(1) to schedule or cancel. Precision is one tick. A cancelled
+ * timeout leaves the pending count at once but stays in its slot until the wheel next passes it, within one turn.
+ */
+public final class TimerWheel {
+    private final long tickNanos;
+    private final int mask;
+    private final List<List<Timeout>> slots;
+    private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger scheduled = new AtomicInteger();
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean running = true;
+    private long tick;
+
+    // Creates and starts a wheel with the given tick length and slot count, rounded up to a power of two.
+    public TimerWheel(String name, long tick, TimeUnit unit, int slotCount) {
+        int size = slotCount <= 2 ? 2 : Integer.highestOneBit(slotCount - 1) << 1;
+        this.tickNanos = unit.toNanos(tick);
+        this.mask = size - 1;
+        this.slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) slots.add(new ArrayList<>());
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Runs the task on the wheel thread once the delay has passed, unless the returned timeout is cancelled first.
+    public Timeout schedule(long delay, TimeUnit unit, Runnable task) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(delay), scheduled);
+        scheduled.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+
+    // Returns the number of timeouts scheduled and neither fired nor cancelled.
+    public int pendingCount() {
+        return scheduled.get();
+    }
+
+    // Stops the wheel thread; timeouts that have not fired never will.
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    // Sleeps until each tick boundary, files newly scheduled timeouts and fires the slot that is due.
+    private void run() {
+        while (running) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < deadline && running) LockSupport.parkNanos(this, deadline - now);
+            if (!running) return;
+
+            for (Timeout timeout; (timeout = pending.poll()) != null; ) {
+                if (timeout.isCancelled()) continue;
+                // Slot t fires at the end of tick t, so filing by the tick the deadline falls in is never early.
+                long dueTick = Math.max(tick, (timeout.deadline - startNanos) / tickNanos);
+                timeout.rounds = (dueTick - tick) / slots.size();
+                slots.get((int) (dueTick & mask)).add(timeout);
+            }
+            expire(slots.get((int) (tick & mask)));
+            tick++;
+        }
+    }
+
+    // Fires the slot's timeouts whose last round has come and drops the cancelled ones.
+    private void expire(List<Timeout> slot) {
+        for (int i = slot.size() - 1; i >= 0; i--) {
+            Timeout timeout = slot.get(i);
+            if (!timeout.isCancelled() && timeout.rounds-- > 0) continue;
+
+            slot.set(i, slot.get(slot.size() - 1));
+            slot.remove(slot.size() - 1);
+            if (timeout.fire()) {
+                scheduled.decrementAndGet();
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    Log.warn("timer-task-failed", e.toString());
+                }
+            }
+        }
+    }
+
+    /** A scheduled task that either fires or is cancelled, exactly once. */
+    public static final class Timeout {
+        private static final int WAITING = 0;
+        private static final int FIRED = 1;
+        private static final int CANCELLED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final AtomicInteger scheduled;
+        private long rounds;
+
+        Timeout(Runnable task, long deadline, AtomicInteger scheduled) {
+            this.task = task;
+            this.deadline = deadline;
+            this.scheduled = scheduled;
+        }
+
+        // Prevents the task from running and takes it out of the wheel's pending count; returns false when it has
+        // already fired or been cancelled.
+        public boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) return false;
+            scheduled.decrementAndGet();
+            return true;
+        }
+
+        // Returns whether the timeout was cancelled.
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        // Claims the right to run the task.
+        private boolean fire() {
+            return state.compareAndSet(WAITING, FIRED);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package server;
+
+/** Holds the place of a player who has not come back to a recovered game; messages to it are dropped. */
+final class VacantSeat implements Player {
+    private final String color;
+
+    // Creates an empty seat for the given color.
+    VacantSeat(String color) {
+        this.color = color;
+    }
+
+    // Returns a name that marks the seat as empty.
+    @Override
+    public String getName() {
+        return "(vacant " + color + ")";
+    }
+
+    // Drops the message; nobody is there to read it.
+    @Override
+    public void sendMessage(String msg) {
+    }
+
+    // Ignores the room; the seat already belongs to it.
+    @Override
+    public void setRoom(ChessRoom room) {
+    }
+}
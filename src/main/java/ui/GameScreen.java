@@ -1,6 +1,9 @@
 package ui;
 
 import client.ChessClient;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -14,6 +17,7 @@ import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import model.*;
 
 import java.util.ArrayList;
@@ -36,7 +40,13 @@ public class GameScreen {
     private final List<Piece> whiteCaptured = new ArrayList<>();
     private final List<Piece> blackCaptured = new ArrayList<>();
     private final Label statusLabel = new Label();
+    private final Label clockLabel = new Label();
+    private final Timeline clockTicker = new Timeline(new KeyFrame(Duration.millis(200), e -> updateClock()));
+    private int whiteMillis = -1;
+    private int blackMillis = -1;
+    private long clockReadAt;
     private boolean alreadyLeft = false;
+    private boolean gameOver = false;
     private String lastMoveFrom = null;
     private String lastMoveTo = null;
 
@@ -48,6 +58,7 @@ public class GameScreen {
         this.board = new Board();
         this.ruleEngine = new RuleEngine(board);
         client.setMessageHandler(this::handleMessage);
+        clockTicker.setCycleCount(Animation.INDEFINITE);
 
         stage.setOnCloseRequest(e -> {
             client.send("EXIT");
@@ -64,13 +75,13 @@ public class GameScreen {
         // Check for checkmate and display the end screen if applicable.
         if (ruleEngine.isCheckmate(currentTurn)) {
             String winner = currentTurn.equals("white") ? "BLACK" : "WHITE";
-            new EndScreen(stage, "CHECKMATE - " + winner + " WINS").show();
+            endGame("CHECKMATE - " + winner + " WINS");
             return;
         }
 
         // Check for stalemate and display the end screen if applicable.
         if (ruleEngine.isStalemate(currentTurn)) {
-            new EndScreen(stage, "DRAW - STALEMATE").show();
+            endGame("DRAW - STALEMATE");
             return;
         }
 
@@ -137,20 +148,13 @@ public class GameScreen {
 
                 // Handle user clicks for selecting and moving pieces.
                 cell.setOnMouseClicked(e -> {
-                    if (!currentTurn.equals(myColor)) return;
+                    if (gameOver || !currentTurn.equals(myColor)) return;
 
                     if (selectedPiece == null && pieceHere != null && pieceHere.getColor().equals(myColor)) {
                         selectedPiece = pieceHere;
                         selectedPos = position;
                         validMoves.clear();
-                        for (int rr = 0; rr < 8; rr++) {
-                            for (int cc = 0; cc < 8; cc++) {
-                                String to = Board.toChessNotation(rr, cc);
-                                if (ruleEngine.isMoveValid(position, to, myColor)) {
-                                    validMoves.add(to);
-                                }
-                            }
-                        }
+                        ruleEngine.addValidTargets(position, myColor, validMoves);
                         show();
 
                     } else if (selectedPiece != null) {
@@ -159,7 +163,7 @@ public class GameScreen {
 
                         // Validate and execute the move if legal.
                         if (!to.equals(from) && ruleEngine.isMoveValid(from, to, myColor)) {
-                            Piece captured = board.getPiece(to);
+                            Piece captured = board.getCapturedPiece(from, to);
                             if (captured != null) {
                                 // Track captured piece for later display.
                                 if (captured.getColor().equals("white")) blackCaptured.add(captured);
@@ -180,13 +184,9 @@ public class GameScreen {
                                 msg = "MOVE " + from + " " + to;
                             }
 
-                            // Send move to server and apply it to local board.
+                            // Send move to server and apply it to local board (the board moves the castling rook itself).
                             client.send(msg);
                             board.movePiece(from, to);
-                            if (msg.contains("CASTLE")) {
-                                String[] p = msg.split(" ");
-                                board.movePiece(p[4], p[5]);
-                            }
 
                             // Check for promotion and apply if needed.
                             Piece moved = board.getPiece(to);
@@ -199,7 +199,8 @@ public class GameScreen {
                             lastMoveFrom = from;
                             lastMoveTo = to;
 
-                            // Change turn.
+                            // Change turn; the opponent's clock runs from now until its move brings both clocks.
+                            holdClocks();
                             currentTurn = currentTurn.equals("white") ? "black" : "white";
                         }
 
@@ -242,8 +243,13 @@ public class GameScreen {
         HBox middle = new HBox(20, leftCapturedBox, boardGrid, rightCapturedBox);
         middle.setAlignment(Pos.CENTER);
 
-// Layout the entire screen with the status label and board row.
-        VBox root = new VBox(10, statusLabel, middle);
+// Show both clocks in timed games.
+        clockLabel.setFont(new Font(18));
+        clockLabel.setTextFill(Color.WHITE);
+        updateClock();
+
+// Layout the entire screen with the status label, the clocks and board row.
+        VBox root = new VBox(10, statusLabel, clockLabel, middle);
         root.setAlignment(Pos.CENTER);
         root.setStyle("-fx-background-color: black;");
 
@@ -254,6 +260,73 @@ public class GameScreen {
         stage.show();
     }
 
+    // Shows the end screen once, however many ways the end of the game is reported.
+    private void endGame(String result) {
+        if (gameOver) return;
+        gameOver = true;
+        clockTicker.stop();
+        new EndScreen(stage, result).show();
+    }
+
+    // Returns the end screen text for a GAME_OVER line: "checkmate <winner>", "timeout <winner>", "forfeit <winner>",
+    // "stalemate" or "abandoned".
+    private static String resultText(String msg) {
+        String[] parts = msg.split(" ");
+        String reason = parts.length > 1 ? parts[1] : "";
+        String winner = parts.length > 2 ? parts[2].toUpperCase() + " WINS" : "";
+        return switch (reason) {
+            case "checkmate" -> "CHECKMATE - " + winner;
+            case "timeout" -> "TIME OUT - " + winner;
+            case "forfeit" -> "FORFEIT - " + winner;
+            case "stalemate" -> "DRAW - STALEMATE";
+            default -> "GAME OVER - " + reason.toUpperCase();
+        };
+    }
+
+    // Takes both clocks from a TURN or MOVE line's "CLOCK <white ms> <black ms>" suffix, if it has one.
+    private void readClocks(String[] parts) {
+        for (int i = 0; i + 2 < parts.length; i++) {
+            if (!parts[i].equals("CLOCK")) continue;
+            whiteMillis = Integer.parseInt(parts[i + 1]);
+            blackMillis = Integer.parseInt(parts[i + 2]);
+            clockReadAt = System.nanoTime();
+            if (clockTicker.getStatus() != Animation.Status.RUNNING) clockTicker.play();
+            return;
+        }
+    }
+
+    // Stops the clock of the side to move at its current reading before the turn passes.
+    private void holdClocks() {
+        if (whiteMillis < 0) return;
+        if (currentTurn.equals("white")) whiteMillis = remainingMillis("white");
+        else blackMillis = remainingMillis("black");
+        clockReadAt = System.nanoTime();
+    }
+
+    // Returns the color's remaining milliseconds, counting down while it is that color's turn.
+    private int remainingMillis(String color) {
+        int stored = color.equals("white") ? whiteMillis : blackMillis;
+        if (!color.equals(currentTurn) || gameOver) return stored;
+        long elapsed = (System.nanoTime() - clockReadAt) / 1_000_000;
+        return (int) Math.max(0, stored - elapsed);
+    }
+
+    // Shows both clocks as minutes and seconds, or nothing in an untimed game.
+    private void updateClock() {
+        if (whiteMillis < 0) {
+            clockLabel.setText("");
+            return;
+        }
+        clockLabel.setText("WHITE " + formatClock(remainingMillis("white")) + "    BLACK "
+                + formatClock(remainingMillis("black")));
+    }
+
+    // Formats milliseconds as m:ss, rounding up so a clock reads 0:00 only once it has run out.
+    private static String formatClock(int millis) {
+        int seconds = (millis + 999) / 1000;
+        return seconds / 60 + ":" + String.format("%02d", seconds % 60);
+    }
+
     // Loads a piece image and returns it as an ImageView.
     private ImageView getImageView(Piece piece, int size) {
         String path = "/images/" + piece.getColor() + "-" + piece.getType() + ".png";
@@ -277,7 +350,7 @@ public class GameScreen {
                 lastMoveFrom = from;
                 lastMoveTo = to;
 
-                Piece captured = board.getPiece(to);
+                Piece captured = board.getCapturedPiece(from, to);
                 if (captured != null) {
                     if (captured.getColor().equals("white")) blackCaptured.add(captured);
                     else whiteCaptured.add(captured);
@@ -286,31 +359,44 @@ public class GameScreen {
                 Move move = new Move(from, to, board.getPiece(from), captured);
                 moveHistory.add(move);
 
+                // The board relocates the rook itself, so the CASTLE suffix needs no extra move.
                 board.movePiece(from, to);
-                if (parts.length == 6 && "CASTLE".equals(parts[3])) {
-                    board.movePiece(parts[4], parts[5]);
-                }
 
+                // Under-promotions carry a PROMOTE suffix; anything else promotes to a queen.
                 Piece moved = board.getPiece(to);
                 if (ruleEngine.shouldPromote(to, moved)) {
+                    char promotion = parts.length > 4 && parts[3].equals("PROMOTE") ? parts[4].charAt(0) : 'q';
                     board.setPiece(Board.fromChessNotation(to)[0],
                             Board.fromChessNotation(to)[1],
-                            ruleEngine.promotePawn(moved.getColor()));
+                            ruleEngine.promotePawn(moved.getColor(), promotion));
                 }
 
                 currentTurn = currentTurn.equals("white") ? "black" : "white";
+                readClocks(parts);
                 show();
             });
         } else if (msg.startsWith("TURN")) {
             Platform.runLater(() -> {
-                currentTurn = msg.split(" ")[1];
+                String[] parts = msg.split(" ");
+                currentTurn = parts[1];
+                readClocks(parts);
                 show();
             });
+        } else if (msg.startsWith("GAME_OVER")) {
+            Platform.runLater(() -> {
+                if (!alreadyLeft) endGame(resultText(msg));
+            });
+        } else if (msg.startsWith("ERROR")) {
+            // A rejected move stays on the local board, so say why rather than let it pass silently.
+            Platform.runLater(() -> {
+                if (!gameOver) statusLabel.setText(msg.substring("ERROR".length()).trim().toUpperCase());
+            });
         } else if (msg.equals("OPPONENT_LEFT")) {
             if (alreadyLeft) return;
             alreadyLeft = true;
 
             Platform.runLater(() -> {
+                clockTicker.stop();
                 Alert alert = new Alert(Alert.AlertType.INFORMATION);
                 alert.setTitle("Opponent Disconnected");
                 alert.setHeaderText(null);